@@ -0,0 +1,95 @@
+package supermarket;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// ---------- Benchmark Data ----------
+// Builds a store on disk for the benchmarks: a catalog, customers and bills spread over the
+// retention window, written to the same files the app reads. Everything is drawn from a
+// fixed seed so every fork and every run sees the same data.
+class BenchmarkData {
+    static final long SEED = 42;
+    static final long HOLD_TTL_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final int RETENTION_DAYS = 30;
+    private static final String[] KINDS = {"Rice", "Dal", "Oil", "Sugar", "Salt", "Flour", "Milk", "Tea",
+            "Soap", "Biscuit", "Egg", "Onion", "Potato", "Chicken", "Fish", "Juice"};
+    private static final String[] BRANDS = {"Fresh", "Pran", "Teer", "Rupchanda", "Radhuni", "Aarong", "Ifad", "Bashundhara"};
+    
+    static File tempDir() throws IOException {
+        return Files.createTempDirectory("supermarket-bench").toFile();
+    }
+    
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+    
+    // Products named like "Fresh Rice 17"; a third are sold by the kg. Stock is large enough
+    // that a benchmark never runs a product out.
+    static List<Product> catalog(int size, Random random) {
+        List<Product> products = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            String name = BRANDS[random.nextInt(BRANDS.length)] + " " + KINDS[random.nextInt(KINDS.length)] + " " + id;
+            products.add(new Product(id, name, 10 + random.nextInt(490), 1_000_000 * Quantity.ONE, id % 3 == 0 ? "kg" : "pcs"));
+        }
+        return products;
+    }
+    
+    // Writes a complete store into the directory: snapshot, default users and a bill archive
+    // whose bills are spread evenly from 29 days ago up to today.
+    static void populate(File dir, int catalogSize, int customerCount, int retainedBills, int itemsPerBill) {
+        SupermarketStore store = new SupermarketStore(dir, HOLD_TTL_MS);
+        StoreRepository repository = store.repository();
+        Random random = new Random(SEED);
+        List<Product> products = catalog(catalogSize, random);
+        for (Product p : products) {
+            store.newProductId();
+            repository.addProduct(p);
+        }
+        List<Customer> customers = new ArrayList<>(customerCount);
+        for (int i = 0; i < customerCount; i++) {
+            int id = store.newCustomerId();
+            Customer c = new Customer(id, "Customer " + id, String.format("01%09d", id));
+            repository.addCustomer(c);
+            customers.add(c);
+        }
+        
+        LocalDate today = LocalDate.now();
+        for (int b = 0; b < retainedBills; b++) {
+            LocalDate day = today.minusDays(RETENTION_DAYS - 1 - (long) b * RETENTION_DAYS / retainedBills);
+            Date date = Date.from(day.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant());
+            List<BillItem> items = new ArrayList<>(itemsPerBill);
+            long total = 0;
+            for (int i = 0; i < itemsPerBill; i++) {
+                Product p = products.get(random.nextInt(products.size()));
+                long qty = "kg".equals(p.getUnitType()) ? 250 + random.nextInt(1750) : (1 + random.nextInt(3)) * Quantity.ONE;
+                long price = Money.fromTaka(p.getPrice());
+                long subtotal = Money.times(price, qty);
+                items.add(new BillItem(p.getId(), p.getName(), qty, p.getUnitType(), price, subtotal));
+                total += subtotal;
+            }
+            Customer customer = customers.isEmpty() ? null : customers.get(random.nextInt(customers.size()));
+            Bill bill = new Bill(store.newBillId(), customer == null ? 0 : customer.getId(), items, total, date, "cashier", total, 0);
+            store.billArchive().append(bill);
+            if (customer != null) customer.recordPurchase(bill);
+        }
+        store.initializeDefaultUsers();
+        store.saveAll();
+    }
+    
+    // Opens the store in the directory the way the app does at startup.
+    static SupermarketStore open(File dir) {
+        SupermarketStore store = new SupermarketStore(dir, HOLD_TTL_MS);
+        store.load();
+        return store;
+    }
+}
\ No newline at end of file
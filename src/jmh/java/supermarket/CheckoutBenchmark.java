@@ -0,0 +1,60 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Bills per second through BillingService: open a cart, reserve the lines, commit the bill
+// (stock deduction, journal, archive append, today's summary) and wait for the store writer
+// to sync it. Pass -jvmArgsAppend -Dsupermarket.fsync=10ms to see the cost without a sync per bill.
+// Journal compactions run on the writer thread and only show up as a slower sync.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckoutBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int catalogSize;
+    
+    @Param({"5", "20", "50"})
+    int itemsPerBill;
+    
+    private File dir;
+    private SupermarketStore store;
+    private BillingService billing;
+    private Customer customer;
+    private Product[] catalog;
+    private Random random;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir();
+        BenchmarkData.populate(dir, catalogSize, 1000, 0, itemsPerBill);
+        store = BenchmarkData.open(dir);
+        billing = new BillingService(store);
+        customer = store.repository().customerById(1);
+        catalog = store.repository().products().toArray(new Product[0]);
+        random = new Random(BenchmarkData.SEED);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.close();
+        BenchmarkData.delete(dir);
+    }
+    
+    @Benchmark
+    public Bill checkout() {
+        CheckoutEngine.Lane cart = billing.openCart();
+        long total = 0;
+        for (int i = 0; i < itemsPerBill; i++) {
+            total += billing.addToCart(cart, catalog[random.nextInt(catalog.length)], Quantity.ONE).getSubtotal();
+        }
+        return billing.checkout(cart, cart.getLines(), customer, total, "cashier").join();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// What pressing Refresh on the dashboard costs before any painting: the retention sweep
+// and the stat card figures, all from the in-memory store.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DashboardBenchmark {
+    @Param({"1000", "100000"})
+    int catalogSize;
+    
+    @Param({"1000", "100000"})
+    int customerCount;
+    
+    @Param({"1000", "50000"})
+    int retainedBills;
+    
+    @Param({"10"})
+    int itemsPerBill;
+    
+    private File dir;
+    private SupermarketStore store;
+    private CustomerService customers;
+    private InventoryService inventory;
+    private BillingService billing;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir();
+        BenchmarkData.populate(dir, catalogSize, customerCount, retainedBills, itemsPerBill);
+        store = BenchmarkData.open(dir);
+        customers = new CustomerService(store);
+        inventory = new InventoryService(store);
+        billing = new BillingService(store);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(dir);
+    }
+    
+    @Benchmark
+    public void refresh(Blackhole bh) {
+        billing.retireOldBills();
+        bh.consume(inventory.productCount());
+        bh.consume(inventory.count(InventoryStatusIndex.Status.LOW_STOCK));
+        bh.consume(inventory.count(InventoryStatusIndex.Status.OUT_OF_STOCK));
+        DailySalesSummary today = billing.todaySales();
+        bh.consume(today.getRevenue());
+        bh.consume(today.getBillCount());
+        bh.consume(today.getKgSold());
+        bh.consume(today.getPcsSold());
+        bh.consume(today.getCashierTotals());
+        bh.consume(customers.count());
+    }
+}
\ No newline at end of file
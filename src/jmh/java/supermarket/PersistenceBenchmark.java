@@ -0,0 +1,54 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Writing a full snapshot, and opening the store from disk as the app does at startup
+// (snapshot, journal replay, bill archive, index rebuild).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({"1000", "100000"})
+    int catalogSize;
+    
+    @Param({"1000", "100000"})
+    int customerCount;
+    
+    @Param({"1000", "50000"})
+    int retainedBills;
+    
+    @Param({"10"})
+    int itemsPerBill;
+    
+    private File dir;
+    private SupermarketStore store;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir();
+        BenchmarkData.populate(dir, catalogSize, customerCount, retainedBills, itemsPerBill);
+        store = BenchmarkData.open(dir);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(dir);
+    }
+    
+    @Benchmark
+    public void saveAll() {
+        store.saveAll();
+    }
+    
+    @Benchmark
+    public SupermarketStore load() {
+        return BenchmarkData.open(dir);
+    }
+}
\ No newline at end of file
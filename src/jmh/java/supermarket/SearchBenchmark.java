@@ -0,0 +1,37 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// One keystroke's worth of product search: the ranked query the billing screen runs, with
+// the same result limit.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int SEARCH_LIMIT = 100;
+    
+    @Param({"1000", "10000", "100000"})
+    int catalogSize;
+    
+    @Param({"r", "zq", "rice", "fresh ri", "17"})
+    String query;
+    
+    private StoreRepository repository;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new StoreRepository();
+        repository.load(Collections.emptyList(), BenchmarkData.catalog(catalogSize, new Random(BenchmarkData.SEED)), Collections.emptyList());
+    }
+    
+    @Benchmark
+    public List<Product> search() {
+        return repository.search().search(query, SEARCH_LIMIT);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package supermarket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// The stock-deduction step of a bill commit. Lines are resolved by product id, so the
+// time per bill should stay flat as the catalogue grows; the old scan for each line's
+// product by name is timed alongside for comparison.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockDeductionBenchmark {
+    @Param({"1000", "10000", "100000", "500000"})
+    int catalogSize;
+    
+    @Param({"20"})
+    int linesPerBill;
+    
+    private StoreRepository repository;
+    private List<List<BillItem>> carts;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Product> catalog = new ArrayList<>(catalogSize);
+        for (int id = 1; id <= catalogSize; id++) {
+            catalog.add(new Product(id, "Product " + id, 10 + id % 90, Long.MAX_VALUE / 2, id % 3 == 0 ? "kg" : "pcs"));
+        }
+        repository = new StoreRepository();
+        repository.load(Collections.emptyList(), catalog, Collections.emptyList());
+        
+        Random random = new Random(BenchmarkData.SEED);
+        carts = new ArrayList<>();
+        for (int c = 0; c < 1024; c++) {
+            List<BillItem> cart = new ArrayList<>(linesPerBill);
+            for (int l = 0; l < linesPerBill; l++) {
+                Product p = catalog.get(random.nextInt(catalogSize));
+                long price = Money.fromTaka(p.getPrice());
+                cart.add(new BillItem(p.getId(), p.getName(), Quantity.ONE, p.getUnitType(), price, price));
+            }
+            carts.add(cart);
+        }
+    }
+    
+    @Benchmark
+    public void byId() {
+        repository.deductStock(carts.get(next++ & 1023));
+    }
+    
+    @Benchmark
+    public void byNameScan() {
+        for (BillItem item : carts.get(next++ & 1023)) {
+            for (Product p : repository.products()) {
+                if (p.getName().equals(item.getProductName())) {
+                    p.reduceStock(item.getQuantity());
+                    break;
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
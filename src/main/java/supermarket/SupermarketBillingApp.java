@@ -0,0 +1,6348 @@
+package supermarket;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import javax.management.*;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.event.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// ---------- User Classes ----------
+class User implements Serializable {
+    private static final long serialVersionUID = -5235628667515692204L;
+    private String username;
+    private String password;
+    private String role;
+    public User(String username, String password, String role) {
+        this.username = username;
+        this.password = password;
+        this.role = role;
+    }
+    public String getUsername() { return username; }
+    public String getPassword() { return password; }
+    public String getRole() { return role; }
+    
+    public boolean authenticate(String password) {
+        return this.password.equals(password);
+    }
+}
+
+// ---------- Entity Classes ----------
+class Customer implements Serializable {
+    // Pinned to the original class so its customers.ser still loads. That file also holds
+    // each customer's purchaseHistory, which is skipped on reading; bills.ser is read instead.
+    private static final long serialVersionUID = -520365901462395540L;
+    private int id;
+    private String name;
+    private String phone;
+    // Every bill the customer has, including the archived ones; kept current at checkout
+    // so the customer table never has to look at the bills themselves.
+    private int visits;
+    private long lastPurchase; // millis, 0 if never
+    private long lifetimeSpend; // paisa
+    // Not serialized: rebuilt from the bills list by PurchaseHistoryIndex after loading.
+    // Only holds the bills still in memory.
+    private transient List<Bill> purchaseHistory;
+    public Customer(int id, String name, String phone) {
+        this.id = id;
+        this.name = name;
+        this.phone = phone;
+        this.purchaseHistory = new ArrayList<>();
+    }
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public String getPhone() { return phone; }
+    public List<Bill> getPurchaseHistory() { return purchaseHistory; }
+    public void addPurchase(Bill bill) { purchaseHistory.add(bill); }
+    public void setPurchaseHistory(List<Bill> history) { this.purchaseHistory = history; }
+    public int getVisits() { return visits; }
+    public long getLastPurchase() { return lastPurchase; }
+    public long getLifetimeSpend() { return lifetimeSpend; }
+    
+    public void recordPurchase(Bill bill) {
+        visits++;
+        lifetimeSpend += bill.getTotal();
+        lastPurchase = Math.max(lastPurchase, bill.getDate().getTime());
+    }
+    
+    // The caller works out the newest purchase left, which may be in the archive.
+    public void removePurchase(Bill bill, long lastPurchase) {
+        visits--;
+        lifetimeSpend -= bill.getTotal();
+        this.lastPurchase = lastPurchase;
+    }
+    
+    public void setSummary(int visits, long lastPurchase, long lifetimeSpend) {
+        this.visits = visits;
+        this.lastPurchase = lastPurchase;
+        this.lifetimeSpend = lifetimeSpend;
+    }
+    
+    // Added missing methods
+    public void setName(String name) { this.name = name; }
+    public void setPhone(String phone) { this.phone = phone; }
+    // Detached copy for a snapshot written while the store keeps changing.
+    Customer copy() {
+        Customer c = new Customer(id, name, phone);
+        c.setSummary(visits, lastPurchase, lifetimeSpend);
+        return c;
+    }
+    
+    public String toString() {
+        return name + " (" + phone + ")";
+    }
+}
+
+class Product implements Serializable {
+    // Pinned to the original class so products.ser written with whole-unit int stock still loads
+    private static final long serialVersionUID = 6286672167348649967L;
+    private int id;
+    private String name;
+    private double price;
+    private long stockMilli; // milli-units, see Quantity
+    private String unitType; // "kg" or "pcs"
+    private int lowStockThreshold = 5;
+    private transient InventoryStatusIndex statusIndex;
+    public Product(int id, String name, double price, long stock, String unitType) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.stockMilli = stock;
+        this.unitType = unitType;
+    }
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public double getPrice() { return price; }
+    public long getStock() { return stockMilli; }
+    public String getUnitType() { return unitType; }
+    public int getLowStockThreshold() { return lowStockThreshold; }
+    public void setStock(long stock) {
+        this.stockMilli = stock;
+        statusChanged();
+    }
+    public void setLowStockThreshold(int lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+        statusChanged();
+    }
+    void setStatusIndex(InventoryStatusIndex statusIndex) { this.statusIndex = statusIndex; }
+    public void setPrice(double price) { this.price = price; }
+    public void setName(String name) { this.name = name; }
+    public void reduceStock(long qty) { 
+        this.stockMilli -= qty;
+        statusChanged();
+    }
+    public boolean isLowStock() { return stockMilli <= lowStockThreshold * Quantity.ONE; }
+    // Detached copy for a snapshot written while the store keeps changing.
+    Product copy() {
+        Product p = new Product(id, name, price, stockMilli, unitType);
+        p.lowStockThreshold = lowStockThreshold;
+        return p;
+    }
+    private void statusChanged() {
+        if (statusIndex != null) statusIndex.update(this);
+    }
+    public String toString() {
+        return name + " (Tk " + price + " per " + unitType + ")";
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        ObjectStreamClass written = fields.getObjectStreamClass();
+        id = fields.get("id", 0);
+        name = (String) fields.get("name", null);
+        price = fields.get("price", 0.0);
+        unitType = (String) fields.get("unitType", null);
+        if (written.getField("stockMilli") != null) {
+            stockMilli = fields.get("stockMilli", 0L);
+        } else {
+            stockMilli = fields.get("stock", 0) * Quantity.ONE;
+        }
+        lowStockThreshold = written.getField("lowStockThreshold") != null ? fields.get("lowStockThreshold", 5) : 5;
+    }
+}
+
+class BillItem {
+    private final int productId;
+    private final String productName;
+    private final long quantity; // milli-units
+    private final String unitType;
+    // Money in paisa
+    private final long unitPrice;
+    private final long subtotal;
+    public BillItem(int productId, String productName, long quantity, String unitType, long unitPrice, long subtotal) {
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+        this.unitType = unitType;
+        this.unitPrice = unitPrice;
+        this.subtotal = subtotal;
+    }
+    public int getProductId() { return productId; }
+    public String getProductName() { return productName; }
+    public long getQuantity() { return quantity; }
+    public String getUnitType() { return unitType; }
+    public long getUnitPrice() { return unitPrice; }
+    public long getSubtotal() { return subtotal; }
+    public String toReceiptLine() {
+        return String.format("%-15s %5s %3s   %7s   %8s", 
+            productName.length() > 15 ? productName.substring(0, 12) + "..." : productName,
+            Quantity.format(quantity), unitType, Money.format(unitPrice), Money.format(subtotal));
+    }
+    
+    // Bills saved by the original app kept only the receipt text of each line, formatted
+    // as "%-15s %5.3f %3s   %7s   %8s" with "Tk 12.50" amounts. The product id is not in
+    // it and is left as 0; a line that does not parse is kept as its text.
+    static BillItem fromReceiptLine(String line) {
+        if (line.length() > 15) {
+            String[] rest = line.substring(15).trim().replace("Tk ", "").split("\\s+");
+            if (rest.length == 4 && ("pcs".equals(rest[1]) || "kg".equals(rest[1]))) {
+                try {
+                    return new BillItem(0, line.substring(0, 15).trim(), Quantity.fromDouble(Double.parseDouble(rest[0])),
+                            rest[1], Money.fromTaka(Double.parseDouble(rest[2])), Money.fromTaka(Double.parseDouble(rest[3])));
+                } catch (NumberFormatException e) {
+                    // Fall through
+                }
+            }
+        }
+        return new BillItem(0, line.trim(), 0, "pcs", 0, 0);
+    }
+}
+
+class Bill implements Serializable {
+    // Bills are stored by BillArchive. Serialization is only used to read the bills.ser of
+    // the original app, whose layout and UID are declared here.
+    private static final long serialVersionUID = -6771831178367677465L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("billNo", int.class),
+        new ObjectStreamField("customer", Customer.class),
+        new ObjectStreamField("items", List.class),
+        new ObjectStreamField("total", double.class),
+        new ObjectStreamField("date", Date.class),
+        new ObjectStreamField("cashier", String.class),
+        new ObjectStreamField("amountPaid", double.class),
+        new ObjectStreamField("change", double.class),
+    };
+    private int billNo;
+    private int customerId;
+    // Re-linked from the customer id on load.
+    private Customer customer;
+    private List<BillItem> items;
+    // Money in paisa
+    private long total;
+    private Date date;
+    private String cashier;
+    private long amountPaid;
+    private long change;
+    public Bill(int billNo, Customer customer, List<BillItem> items, long total, Date date, String cashier, long amountPaid, long change) {
+        this(billNo, customer.getId(), items, total, date, cashier, amountPaid, change);
+        this.customer = customer;
+    }
+    public Bill(int billNo, int customerId, List<BillItem> items, long total, Date date, String cashier, long amountPaid, long change) {
+        this.billNo = billNo;
+        this.customerId = customerId;
+        this.items = items;
+        this.total = total;
+        this.date = date;
+        this.cashier = cashier;
+        this.amountPaid = amountPaid;
+        this.change = change;
+    }
+    public int getBillNo() { return billNo; }
+    public Customer getCustomer() { return customer; }
+    public int getCustomerId() { return customerId; }
+    public void setCustomer(Customer customer) { this.customer = customer; }
+    public long getTotal() { return total; }
+    public Date getDate() { return date; }
+    public String getCashier() { return cashier; }
+    public List<BillItem> getItems() { return items; }
+    public long getAmountPaid() { return amountPaid; }
+    public long getChange() { return change; }
+    public String toPrintableString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("========================================\n");
+        sb.append("          AMADER SUPERMARKET           \n");
+        sb.append("       123 Main Road, THAKURGAON         \n");
+        sb.append("          Phone: 01518987563             \n");
+        sb.append("========================================\n");
+        sb.append("Bill No: ").append(billNo).append("\n");
+        sb.append("Date: ").append(new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(date)).append("\n");
+        sb.append("Customer: ").append(customer.getName()).append("\n");
+        sb.append("Phone: ").append(customer.getPhone()).append("\n");
+        sb.append("Cashier: ").append(cashier).append("\n");
+        sb.append("----------------------------------------\n");
+        sb.append("Item           Qty   Price    Amount\n");
+        sb.append("----------------------------------------\n");
+        
+        for (BillItem item : items) {
+            sb.append(item.toReceiptLine()).append("\n");
+        }
+        
+        sb.append("----------------------------------------\n");
+        sb.append("Total: ").append(Money.format(total)).append("\n");
+        sb.append("Amount Paid: ").append(Money.format(amountPaid)).append("\n");
+        sb.append("Change: ").append(Money.format(change)).append("\n");
+        sb.append("========================================\n");
+        sb.append("      Thank you for your purchase!      \n");
+        sb.append("        Please visit again soon!        \n");
+        sb.append("========================================\n");
+        return sb.toString();
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException("Bills are written by BillArchive");
+    }
+    
+    // The original layout: the customer itself, receipt lines as text and amounts in taka.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        billNo = fields.get("billNo", 0);
+        Customer c = (Customer) fields.get("customer", null);
+        // The customer can still be half read here, when this bill is reached through its
+        // purchase history, so its id is taken once the whole file has been read
+        if (c != null) in.registerValidation(() -> customerId = c.getId(), 0);
+        items = new ArrayList<>();
+        List<?> lines = (List<?>) fields.get("items", null);
+        if (lines != null) {
+            for (Object line : lines) {
+                items.add(BillItem.fromReceiptLine(String.valueOf(line)));
+            }
+        }
+        total = Money.fromTaka(fields.get("total", 0.0));
+        date = (Date) fields.get("date", null);
+        cashier = (String) fields.get("cashier", null);
+        amountPaid = Money.fromTaka(fields.get("amountPaid", 0.0));
+        change = Money.fromTaka(fields.get("change", 0.0));
+    }
+}
+
+// ---------- Bill Item Codec ----------
+// Compact, versioned encoding of bill lines: a version byte, a varint count, then per
+// line a varint product id, the name, a unit code, the quantity in milli-units and two
+// varint paisa amounts. Older versions stored the quantity (1, 2) and amounts (1) as
+// doubles and are still readable.
+class BillItemCodec {
+    static final int VERSION = 3;
+    private static final String[] UNITS = {"pcs", "kg"};
+    
+    public static void write(DataOutput out, List<BillItem> items) throws IOException {
+        out.writeByte(VERSION);
+        writeVarInt(out, items.size());
+        for (BillItem item : items) {
+            writeVarInt(out, item.getProductId());
+            out.writeUTF(item.getProductName());
+            out.writeByte(unitCode(item.getUnitType()));
+            writeVarLong(out, item.getQuantity());
+            writeVarLong(out, item.getUnitPrice());
+            writeVarLong(out, item.getSubtotal());
+        }
+    }
+    
+    public static List<BillItem> read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported bill item format version " + version);
+        }
+        int count = readVarInt(in);
+        List<BillItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int productId = readVarInt(in);
+            String name = in.readUTF();
+            String unitType = UNITS[in.readUnsignedByte()];
+            long quantity = version < 3 ? Quantity.fromDouble(in.readDouble()) : readVarLong(in);
+            long unitPrice = version == 1 ? Money.fromTaka(in.readDouble()) : readVarLong(in);
+            long subtotal = version == 1 ? Money.fromTaka(in.readDouble()) : readVarLong(in);
+            items.add(new BillItem(productId, name, quantity, unitType, unitPrice, subtotal));
+        }
+        return items;
+    }
+    
+    private static int unitCode(String unitType) throws IOException {
+        for (int i = 0; i < UNITS.length; i++) {
+            if (UNITS[i].equals(unitType)) return i;
+        }
+        throw new IOException("Unknown unit type " + unitType);
+    }
+    
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+    
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
+
+// ---------- Quantity ----------
+// Stock and bill quantities are held as milli-units: 1000 per piece or per kg, so a
+// weighed 1.250 kg is exactly 1250 and all stock arithmetic stays in longs.
+class Quantity {
+    public static final long ONE = 1000;
+    
+    public static long fromDouble(double units) {
+        return Math.round(units * ONE);
+    }
+    
+    // Parses typed input such as "3" or "1.25"; throws NumberFormatException if it is not a quantity.
+    public static long parse(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(3, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Quantity out of range: " + text);
+        }
+    }
+    
+    public static boolean isWhole(long quantity) {
+        return quantity % ONE == 0;
+    }
+    
+    // Whole quantities print without decimals, others with three: "3", "1.250".
+    public static String format(long quantity) {
+        long abs = Math.abs(quantity);
+        String whole = (quantity < 0 ? "-" : "") + abs / ONE;
+        if (abs % ONE == 0) return whole;
+        String fraction = String.valueOf(1000 + abs % ONE).substring(1);
+        return whole + "." + fraction;
+    }
+}
+
+// ---------- Money ----------
+// Amounts are held as whole paisa (1 Tk = 100 paisa) so totals add up exactly.
+class Money {
+    public static long fromTaka(double taka) {
+        return Math.round(taka * 100);
+    }
+    
+    // Parses typed input such as "250" or "99.5"; throws NumberFormatException if it is not an amount.
+    public static long parse(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+    
+    // Price times a quantity in milli-units, rounded half up to the nearest paisa.
+    public static long times(long paisa, long quantity) {
+        return (paisa * quantity + Quantity.ONE / 2) / Quantity.ONE;
+    }
+    
+    public static String format(long paisa) {
+        return "Tk " + plain(paisa);
+    }
+    
+    // Without the currency, e.g. "12.05".
+    public static String plain(long paisa) {
+        long abs = Math.abs(paisa);
+        long fraction = abs % 100;
+        return (paisa < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
+
+// ---------- Purchase History Index ----------
+// customers.ser and bills.ser no longer contain each other, so after a load the
+// Bill -> Customer links and every purchase history are rebuilt from the bills list.
+// Both sides then share the same Bill instances.
+class PurchaseHistoryIndex {
+    public static void rebuild(Collection<Customer> customers, Collection<Bill> bills) {
+        Map<Integer, Customer> byId = new HashMap<>();
+        for (Customer c : customers) {
+            c.setPurchaseHistory(new ArrayList<>());
+            byId.put(c.getId(), c);
+        }
+        for (Bill bill : bills) {
+            Customer c = byId.get(bill.getCustomerId());
+            if (c == null) {
+                c = detachedCustomer(bill.getCustomerId());
+                byId.put(c.getId(), c);
+            }
+            bill.setCustomer(c);
+            c.addPurchase(bill);
+        }
+    }
+    
+    // Links bills read straight from the archive to their customers without touching histories.
+    public static void attach(Collection<Customer> customers, Collection<Bill> bills) {
+        Map<Integer, Customer> byId = new HashMap<>();
+        for (Customer c : customers) {
+            byId.put(c.getId(), c);
+        }
+        for (Bill bill : bills) {
+            Customer c = byId.get(bill.getCustomerId());
+            bill.setCustomer(c != null ? c : detachedCustomer(bill.getCustomerId()));
+        }
+    }
+    
+    // Stand-in for bills whose customer has since been deleted.
+    public static Customer detachedCustomer(int customerId) {
+        return new Customer(customerId, "(deleted customer)", "-");
+    }
+}
+
+// ---------- File Handler ----------
+class FileHandler {
+    public static void saveData(Object obj, String filename) {
+        try {
+            writeData(obj, filename);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+    // For callers that must know whether the write succeeded. The data goes to a .tmp file
+    // that replaces the target only once it is synced, so a crash leaves either the old
+    // file or the new one, never a mix.
+    public static void writeData(Object obj, String filename) throws IOException {
+        File tmp = new File(filename + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp)) {
+            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(file));
+            oos.writeObject(obj);
+            oos.flush();
+            file.getChannel().force(true);
+        }
+        moveIntoPlace(tmp, new File(filename));
+    }
+    // A file that exists but cannot be read is an error, not an empty result.
+    public static Object readData(File file) throws IOException {
+        try (ObjectInputStream ois = new LegacyObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return ois.readObject();
+        } catch (ClassNotFoundException | RuntimeException e) {
+            throw new IOException(file.getName() + " could not be read: " + e, e);
+        }
+    }
+    
+    static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new LegacyObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        }
+    }
+    
+    // Renames a synced temporary file over the target in one step.
+    static void moveIntoPlace(File tmp, File target) throws IOException {
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        // Syncing the directory makes the rename itself durable. Windows cannot open a
+        // directory this way; the rename is still atomic there.
+        try (FileChannel dir = FileChannel.open(target.getAbsoluteFile().getParentFile().toPath(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform
+        }
+    }
+    
+    // The original app's .ser files name its classes without a package; those names are
+    // resolved against this package, whose classes keep the original serialVersionUIDs.
+    private static class LegacyObjectInputStream extends ObjectInputStream {
+        LegacyObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+        
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if (name.indexOf('.') < 0 && !name.startsWith("[")) {
+                try {
+                    return Class.forName(FileHandler.class.getPackageName() + "." + name, false, FileHandler.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    // Not one of ours; fall through
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
+
+// ---------- Snapshot Files ----------
+// Full snapshots of the store, one file per generation: <name>.<generation>. A snapshot is
+// written to a .tmp file, synced and then renamed into place, so a crash leaves either the
+// whole new generation or none of it. The file is [int magic][long generation][int count]
+// followed by one section per list, framed as [UTF name][long length][int CRC32C][bytes].
+// Every checksum is verified before anything is deserialized; a damaged file is renamed to
+// .corrupt and the generation before it is used. Journal file N holds the records written
+// after snapshot N was taken, so the two newest generations are kept along with the
+// journal files from the older one onwards.
+class SnapshotFiles {
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    
+    static final class Loaded {
+        final long generation;
+        final Map<String, Object> sections;
+        
+        Loaded(long generation, Map<String, Object> sections) {
+            this.generation = generation;
+            this.sections = sections;
+        }
+    }
+    
+    private final File dir;
+    private final String name;
+    
+    SnapshotFiles(File dir, String name) {
+        this.dir = dir;
+        this.name = name;
+    }
+    
+    File file(long generation) {
+        return new File(dir, name + "." + generation);
+    }
+    
+    // Generations on disk, oldest first; damaged and half-written files are not counted.
+    List<Long> generations() {
+        List<Long> result = new ArrayList<>();
+        String[] names = dir.list();
+        if (names == null) return result;
+        String prefix = name + ".";
+        for (String fileName : names) {
+            if (!fileName.startsWith(prefix)) continue;
+            try {
+                result.add(Long.parseLong(fileName.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                // .tmp or .corrupt
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+    
+    long newestGeneration() {
+        List<Long> generations = generations();
+        return generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+    }
+    
+    // Writes the generation and removes the ones before the previous generation. Returns
+    // the oldest generation kept; journal files older than that are no longer needed.
+    long write(long generation, Map<String, Object> sections) throws IOException {
+        File tmp = new File(dir, name + "." + generation + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedOutputStream buffer = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(MAGIC);
+            out.writeLong(generation);
+            out.writeInt(sections.size());
+            for (Map.Entry<String, Object> section : sections.entrySet()) {
+                out.writeUTF(section.getKey());
+                out.writeLong(0);
+                out.writeInt(0);
+                out.flush();
+                long start = channel.position();
+                CRC32C crc = new CRC32C();
+                ObjectOutputStream oos = new ObjectOutputStream(new CheckedOutputStream(buffer, crc));
+                oos.writeObject(section.getValue());
+                oos.flush();
+                long length = channel.position() - start;
+                // Fill in the length and checksum left blank before the section
+                ByteBuffer header = ByteBuffer.allocate(12).putLong(length).putInt((int) crc.getValue());
+                header.flip();
+                channel.write(header, start - 12);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        FileHandler.moveIntoPlace(tmp, file(generation));
+        
+        List<Long> generations = generations();
+        long oldestKept = generations.size() > 1 ? generations.get(generations.size() - 2) : generation;
+        for (long old : generations) {
+            if (old < oldestKept) Files.deleteIfExists(file(old).toPath());
+        }
+        return oldestKept;
+    }
+    
+    // The newest generation that reads back intact, or null if there is none.
+    Loaded readNewest() {
+        List<Long> generations = generations();
+        for (int i = generations.size() - 1; i >= 0; i--) {
+            File file = file(generations.get(i));
+            try {
+                return read(file, generations.get(i));
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                new IOException("Snapshot " + file.getName() + " is damaged; trying the generation before it", e).printStackTrace();
+                file.renameTo(new File(file.getPath() + ".corrupt"));
+            }
+        }
+        return null;
+    }
+    
+    private Loaded read(File file, long generation) throws IOException, ClassNotFoundException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("not a snapshot file");
+            if (in.readLong() != generation) throw new IOException("generation does not match the file name");
+            int count = in.readInt();
+            List<String> names = new ArrayList<>(count);
+            List<byte[]> bodies = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String section = in.readUTF();
+                long length = in.readLong();
+                int expected = in.readInt();
+                if (length < 0 || length > file.length() || length > Integer.MAX_VALUE - 8) {
+                    throw new IOException("section " + section + " is cut short");
+                }
+                byte[] body = new byte[(int) length];
+                in.readFully(body);
+                CRC32C crc = new CRC32C();
+                crc.update(body);
+                if ((int) crc.getValue() != expected) {
+                    throw new IOException("checksum mismatch in section " + section);
+                }
+                names.add(section);
+                bodies.add(body);
+            }
+            Map<String, Object> sections = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                sections.put(names.get(i), FileHandler.deserialize(bodies.get(i)));
+            }
+            return new Loaded(generation, sections);
+        }
+    }
+}
+
+// ---------- Transaction Journal ----------
+// Append-only log of individual changes written between snapshots, so a sale
+// only costs the bytes of that sale instead of a rewrite of the whole snapshot.
+// Each record is framed as [int length][byte type | CHECKSUMMED][int CRC32C of type and
+// payload][payload]; records from before checksums, [int length][byte type][payload],
+// are still read, also when followed by newer ones in the same file. Bills themselves are
+// written to the BillArchive; the journal only carries the stock they consumed.
+// Records are encoded in memory by the thread making the change and handed to the
+// PersistenceWriter with takePending(); the file methods below are only called by the
+// writer, or while it is idle. There is one file per snapshot generation, <name>.<N>,
+// holding the records written after snapshot N; a compaction rotates to the next one.
+// A compaction is due once the journal has grown as large as the last snapshot (and at
+// least minCompactBytes), so the cost of copying and writing the store is spread over
+// as many bytes of changes as it writes, however large the store grows, and a restart
+// never replays more than about one snapshot's worth of records.
+class TransactionJournal {
+    static final byte CUSTOMER_SAVED = 1;
+    static final byte CUSTOMER_DELETED = 2;
+    static final byte PRODUCT_DELETED = 4;
+    static final byte PRODUCT_SAVED = 6;
+    static final byte STOCK_CHANGED = 7;
+    static final byte CUSTOMER_SUMMARY = 8;
+    // Same records with stock as whole units in an int; still replayed
+    static final byte LEGACY_PRODUCT_SAVED = 3;
+    static final byte LEGACY_STOCK_CHANGED = 5;
+    // Set on the type of records that carry a checksum
+    private static final int CHECKSUMMED = 0x80;
+    
+    private final String filename;
+    private final long minCompactBytes;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private int pendingRecords;
+    private FileOutputStream out;
+    // Length of the current file up to the last complete write
+    private long written;
+    private long generation;
+    private int recordCount;
+    private long byteCount;
+    private volatile long snapshotBytes;
+    
+    public TransactionJournal(String filename, long minCompactBytes) {
+        this.filename = filename;
+        this.minCompactBytes = minCompactBytes;
+        List<Long> generations = generations();
+        if (!generations.isEmpty()) generation = generations.get(generations.size() - 1);
+    }
+    
+    private File file(long generation) {
+        return new File(filename + "." + generation);
+    }
+    
+    // Generations with a file on disk, oldest first.
+    private List<Long> generations() {
+        File base = new File(filename);
+        List<Long> result = new ArrayList<>();
+        String[] names = base.getAbsoluteFile().getParentFile().list();
+        if (names == null) return result;
+        String prefix = base.getName() + ".";
+        for (String name : names) {
+            if (!name.startsWith(prefix)) continue;
+            try {
+                result.add(Long.parseLong(name.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                // Some other file
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+    
+    // The generation records are written to now.
+    public long generation() {
+        return generation;
+    }
+    
+    // Records written from now on belong after snapshot N, which exists even if no
+    // journal file for it does yet.
+    public void advanceTo(long generation) {
+        if (generation > this.generation) this.generation = generation;
+    }
+    
+    public void customerSaved(Customer c) {
+        try {
+            recordOut.writeInt(c.getId());
+            recordOut.writeUTF(c.getName());
+            recordOut.writeUTF(c.getPhone());
+            append(CUSTOMER_SAVED);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    public void customerDeleted(int customerId) {
+        try {
+            recordOut.writeInt(customerId);
+            append(CUSTOMER_DELETED);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // The customer's purchase counters as they are now, so replaying it twice is harmless.
+    public void customerSummary(Customer c) {
+        try {
+            recordOut.writeInt(c.getId());
+            recordOut.writeInt(c.getVisits());
+            recordOut.writeLong(c.getLastPurchase());
+            recordOut.writeLong(c.getLifetimeSpend());
+            append(CUSTOMER_SUMMARY);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    public void productSaved(Product p) {
+        try {
+            recordOut.writeInt(p.getId());
+            recordOut.writeUTF(p.getName());
+            recordOut.writeDouble(p.getPrice());
+            recordOut.writeLong(p.getStock());
+            recordOut.writeUTF(p.getUnitType());
+            recordOut.writeInt(p.getLowStockThreshold());
+            append(PRODUCT_SAVED);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    public void productDeleted(int productId) {
+        try {
+            recordOut.writeInt(productId);
+            append(PRODUCT_DELETED);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    public void stockChanged(Product p) {
+        try {
+            recordOut.writeInt(p.getId());
+            recordOut.writeLong(p.getStock());
+            append(STOCK_CHANGED);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private void append(byte type) throws IOException {
+        pendingOut.writeInt(record.size());
+        pendingOut.writeByte(type | CHECKSUMMED);
+        pendingOut.writeInt(checksum(type, record.toByteArray()));
+        record.writeTo(pendingOut);
+        byteCount += 9 + record.size();
+        record.reset();
+        pendingRecords++;
+        recordCount++;
+    }
+    
+    public int pendingRecords() {
+        return pendingRecords;
+    }
+    
+    // The records encoded since the last call, ready to be written.
+    public byte[] takePending() {
+        byte[] bytes = pending.toByteArray();
+        pending.reset();
+        pendingRecords = 0;
+        return bytes;
+    }
+    
+    // Records since the last compaction, including ones replayed at startup.
+    public int recordCount() {
+        return recordCount;
+    }
+    
+    // Bytes of records since the last compaction, including ones replayed at startup.
+    public long byteCount() {
+        return byteCount;
+    }
+    
+    // The size of the newest snapshot, which sets when the next compaction is due.
+    public void setSnapshotBytes(long bytes) {
+        snapshotBytes = bytes;
+    }
+    
+    public boolean needsCompaction() {
+        return byteCount >= Math.max(minCompactBytes, snapshotBytes);
+    }
+    
+    // Called when a compaction is scheduled; later records belong after its snapshot.
+    public void compactionScheduled() {
+        recordCount = 0;
+        byteCount = 0;
+    }
+    
+    // Anything left by a write that failed part way is cut off first, so the writer can
+    // retry the same bytes without a torn record ending up in the middle of the file.
+    public void write(byte[] bytes) throws IOException {
+        if (bytes.length == 0) return;
+        if (out == null) {
+            out = new FileOutputStream(file(generation), true);
+            written = out.getChannel().size();
+        }
+        if (out.getChannel().size() > written) out.getChannel().truncate(written);
+        out.write(bytes);
+        written += bytes.length;
+    }
+    
+    public void force() throws IOException {
+        if (out != null) out.getChannel().force(false);
+    }
+    
+    // Syncs and closes the current file and starts the next generation, for the snapshot
+    // about to be written.
+    public void rotate() throws IOException {
+        force();
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        generation++;
+    }
+    
+    // Deletes the files of generations before the given one.
+    public void dropBefore(long generation) throws IOException {
+        for (long old : generations()) {
+            if (old < generation) Files.deleteIfExists(file(old).toPath());
+        }
+    }
+    
+    // Before snapshots had generations the journal was <name>, with <name>.prev while a
+    // compaction ran. Their records, in that order, become the first generation.
+    public void importLegacy() throws IOException {
+        File legacy = new File(filename);
+        File legacyPrev = new File(filename + ".prev");
+        if (!legacy.exists() && !legacyPrev.exists()) return;
+        try (FileOutputStream target = new FileOutputStream(file(generation), true)) {
+            if (legacyPrev.exists()) Files.copy(legacyPrev.toPath(), target);
+            if (legacy.exists()) Files.copy(legacy.toPath(), target);
+            target.getChannel().force(false);
+        }
+        Files.deleteIfExists(legacyPrev.toPath());
+        Files.deleteIfExists(legacy.toPath());
+    }
+    
+    // Applies the files from the snapshot's generation onwards on top of its lists. Every
+    // record is idempotent, so replaying records that were already folded into the
+    // snapshot is harmless.
+    public void replay(List<Customer> customers, List<Product> products, long fromGeneration) {
+        recordCount = 0;
+        byteCount = 0;
+        Map<Integer, Customer> customersById = new LinkedHashMap<>();
+        for (Customer c : customers) {
+            customersById.put(c.getId(), c);
+        }
+        Map<Integer, Product> productsById = new LinkedHashMap<>();
+        for (Product p : products) {
+            productsById.put(p.getId(), p);
+        }
+        List<Long> generations = generations();
+        for (long g : generations) {
+            if (g >= fromGeneration) {
+                boolean newest = g == generations.get(generations.size() - 1);
+                recordCount += replay(file(g), newest, customersById, productsById);
+            }
+        }
+        customers.clear();
+        customers.addAll(customersById.values());
+        products.clear();
+        products.addAll(productsById.values());
+    }
+    
+    // Only the end of the newest file can hold a record a crash cut short, and that record
+    // was never confirmed, so it is cut off. Damage anywhere else would mean dropping
+    // committed records, so it stops the load with every file left as it was.
+    private int replay(File file, boolean newest, Map<Integer, Customer> customersById, Map<Integer, Product> productsById) {
+        long fileLength = file.length();
+        long validLength = 0;
+        long recordEnd = fileLength;
+        int replayed = 0;
+        String damage = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (validLength < fileLength) {
+                recordEnd = fileLength;
+                if (fileLength - validLength < 5) {
+                    damage = "the last record is cut short";
+                    break;
+                }
+                int length = in.readInt();
+                int flagged = in.readUnsignedByte();
+                boolean checked = (flagged & CHECKSUMMED) != 0;
+                int header = checked ? 9 : 5;
+                if (length < 0) {
+                    damage = "a record has a negative length";
+                    break;
+                }
+                recordEnd = validLength + header + length;
+                if (recordEnd > fileLength) {
+                    damage = "the last record is cut short";
+                    break;
+                }
+                byte type = (byte) (flagged & ~CHECKSUMMED);
+                int expected = checked ? in.readInt() : 0;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (checked && checksum(type, payload) != expected) {
+                    damage = "a record's checksum does not match";
+                    break;
+                }
+                try {
+                    apply(type, new DataInputStream(new ByteArrayInputStream(payload)), customersById, productsById);
+                } catch (IOException e) {
+                    damage = e.getMessage();
+                    break;
+                }
+                validLength = recordEnd;
+                byteCount += header + length;
+                replayed++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("Could not read " + file + "; no files were changed", e));
+        }
+        if (damage == null) return replayed;
+        if (!newest || recordEnd < fileLength && !zeroFrom(file, validLength)) {
+            throw new UncheckedIOException(new IOException(file + " is damaged at byte " + validLength + " (" + damage
+                    + "); no files were changed"));
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(validLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("Could not cut the unfinished last record off " + file, e));
+        }
+        return replayed;
+    }
+    
+    // A crash can also leave the end of a file filled with zeros instead of the last write.
+    private static boolean zeroFrom(File file, long offset) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            in.skipNBytes(offset);
+            int b;
+            while ((b = in.read()) >= 0) {
+                if (b != 0) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private static int checksum(byte type, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+    
+    private void apply(byte type, DataInputStream in, Map<Integer, Customer> customers, Map<Integer, Product> products) throws IOException {
+        switch (type) {
+            case CUSTOMER_SAVED: {
+                int id = in.readInt();
+                String name = in.readUTF();
+                String phone = in.readUTF();
+                Customer c = customers.get(id);
+                if (c == null) {
+                    customers.put(id, new Customer(id, name, phone));
+                } else {
+                    c.setName(name);
+                    c.setPhone(phone);
+                }
+                break;
+            }
+            case CUSTOMER_DELETED: {
+                customers.remove(in.readInt());
+                break;
+            }
+            case CUSTOMER_SUMMARY: {
+                Customer c = customers.get(in.readInt());
+                int visits = in.readInt();
+                long lastPurchase = in.readLong();
+                long lifetimeSpend = in.readLong();
+                if (c != null) c.setSummary(visits, lastPurchase, lifetimeSpend);
+                break;
+            }
+            case PRODUCT_SAVED:
+            case LEGACY_PRODUCT_SAVED: {
+                int id = in.readInt();
+                String name = in.readUTF();
+                double price = in.readDouble();
+                long stock = type == PRODUCT_SAVED ? in.readLong() : in.readInt() * Quantity.ONE;
+                String unitType = in.readUTF();
+                // Records written before thresholds were configurable end here
+                int threshold = in.available() > 0 ? in.readInt() : 5;
+                Product p = products.get(id);
+                if (p == null) {
+                    p = new Product(id, name, price, stock, unitType);
+                    products.put(id, p);
+                } else {
+                    p.setName(name);
+                    p.setPrice(price);
+                    p.setStock(stock);
+                }
+                p.setLowStockThreshold(threshold);
+                break;
+            }
+            case PRODUCT_DELETED: {
+                products.remove(in.readInt());
+                break;
+            }
+            case STOCK_CHANGED:
+            case LEGACY_STOCK_CHANGED: {
+                Product p = products.get(in.readInt());
+                long stock = type == STOCK_CHANGED ? in.readLong() : in.readInt() * Quantity.ONE;
+                if (p != null) p.setStock(stock);
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+}
+
+// ---------- Bill Archive ----------
+// Bills are kept in append-only segment files, one per day, under the archive directory.
+// The current day's segment is appended to. When the day is over the segment is sealed
+// with a footer index of (billNo, offset) pairs sorted by bill number, followed by a
+// trailer [int count][int indexOffset][int MAGIC]. Reads map only the segment they need,
+// so looking at today's bills or seeking to one bill number never touches older days.
+// Each bill record is [int billNo][byte version][...]; the original layout had no version
+// byte and is read as version 0. Days that leave the retention window are moved to the
+// ColdBillArchive in the cold subdirectory rather than deleted, and reads fall through to it.
+class BillArchive {
+    private static final int MAGIC = 0x42534547;
+    static final int RECORD_VERSION = 1;
+    private static final int TRAILER_SIZE = 12;
+    private static final String SUFFIX = ".seg";
+    
+    private static class Segment {
+        final LocalDate day;
+        final File file;
+        boolean sealed;
+        long size;
+        int minBillNo = Integer.MAX_VALUE;
+        int maxBillNo = Integer.MIN_VALUE;
+        // Sealed segments: where the footer index starts. Open segments: in-memory index.
+        int indexOffset;
+        int count;
+        Map<Integer, Integer> offsets;
+        
+        Segment(LocalDate day, File file) {
+            this.day = day;
+            this.file = file;
+        }
+    }
+    
+    private final File dir;
+    private final File tombstoneFile;
+    private final ColdBillArchive cold;
+    private final TreeMap<LocalDate, Segment> segments = new TreeMap<>();
+    private final Set<Integer> deleted = new HashSet<>();
+    private Segment active;
+    private FileChannel activeChannel;
+    private ExecutorService retirer;
+    
+    public BillArchive(String directory) {
+        this.dir = new File(directory);
+        this.tombstoneFile = new File(dir, "deleted.idx");
+        dir.mkdirs();
+        cold = new ColdBillArchive(new File(dir, "cold"));
+        open();
+    }
+    
+    private void open() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            LocalDate today = LocalDate.now();
+            for (File file : files) {
+                String name = file.getName();
+                LocalDate day;
+                try {
+                    day = LocalDate.parse(name.substring(0, name.length() - SUFFIX.length()));
+                } catch (DateTimeParseException e) {
+                    continue;
+                }
+                if (cold.contains(day)) {
+                    // Moved to the cold archive just before a crash
+                    file.delete();
+                    continue;
+                }
+                Segment segment = new Segment(day, file);
+                try {
+                    if (!readFooter(segment)) {
+                        scan(segment);
+                        if (day.isBefore(today)) seal(segment);
+                    }
+                    segments.put(day, segment);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        if (tombstoneFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(tombstoneFile)))) {
+                while (true) {
+                    deleted.add(in.readInt());
+                }
+            } catch (EOFException e) {
+                // End of tombstones
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    public void append(Bill bill) {
+        try {
+            write(Collections.singletonList(bill));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Appends the bills with one write for each day they fall on. If a write fails, the bills
+    // that did reach the archive are removed from the list, so the caller can retry the
+    // rest; a day's write that failed part way is cut off before the next one.
+    public synchronized void write(List<Bill> bills) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * bills.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        int[] offsets = new int[bills.size()];
+        int i = 0;
+        while (i < bills.size()) {
+            LocalDate day = toDay(bills.get(i).getDate());
+            int first = i;
+            bytes.reset();
+            for (; i < bills.size() && toDay(bills.get(i).getDate()).equals(day); i++) {
+                record.reset();
+                writeBill(recordOut, bills.get(i));
+                offsets[i] = bytes.size();
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            try {
+                if (active == null || !active.day.equals(day)) {
+                    openForAppend(day);
+                }
+                if (activeChannel.size() > active.size) activeChannel.truncate(active.size);
+                while (buf.hasRemaining()) {
+                    activeChannel.write(buf);
+                }
+            } catch (IOException e) {
+                bills.subList(0, first).clear();
+                throw e;
+            }
+            for (int j = first; j < i; j++) {
+                index(active, bills.get(j).getBillNo(), (int) active.size + offsets[j]);
+            }
+            active.size += buf.capacity();
+        }
+    }
+    
+    // Appends go to the OS right away; this makes them durable. Called by the PersistenceWriter.
+    public synchronized void force() throws IOException {
+        if (activeChannel != null) activeChannel.force(false);
+    }
+    
+    public synchronized void delete(int billNo) {
+        if (!deleted.add(billNo)) return;
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tombstoneFile, true))) {
+            out.writeInt(billNo);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Bills are returned with only their customer id set; see PurchaseHistoryIndex.attach.
+    public synchronized List<Bill> readDay(LocalDate day) {
+        List<Bill> result = new ArrayList<>();
+        Segment segment = segments.get(day);
+        if (segment == null) {
+            for (Bill bill : cold.readDay(day)) {
+                if (!deleted.contains(bill.getBillNo())) result.add(bill);
+            }
+            return result;
+        }
+        if (segment.count == 0) return result;
+        try {
+            ByteBuffer buf = map(segment);
+            if (segment.sealed) {
+                for (int i = 0; i < segment.count; i++) {
+                    int entry = segment.indexOffset + i * 8;
+                    addIfLive(result, buf.getInt(entry), buf, buf.getInt(entry + 4));
+                }
+            } else {
+                for (Map.Entry<Integer, Integer> e : segment.offsets.entrySet()) {
+                    addIfLive(result, e.getKey(), buf, e.getValue());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+    
+    // The days still in the hot segments, which are the ones kept in memory.
+    public synchronized List<Bill> readHot() {
+        List<Bill> result = new ArrayList<>();
+        for (LocalDate day : segments.keySet()) {
+            result.addAll(readDay(day));
+        }
+        return result;
+    }
+    
+    public synchronized Bill find(int billNo) {
+        if (deleted.contains(billNo)) return null;
+        for (Segment segment : segments.values()) {
+            if (billNo < segment.minBillNo || billNo > segment.maxBillNo) continue;
+            try {
+                if (segment.sealed) {
+                    ByteBuffer buf = map(segment);
+                    int lo = 0, hi = segment.count - 1;
+                    while (lo <= hi) {
+                        int mid = (lo + hi) >>> 1;
+                        int entry = segment.indexOffset + mid * 8;
+                        int midBillNo = buf.getInt(entry);
+                        if (midBillNo < billNo) {
+                            lo = mid + 1;
+                        } else if (midBillNo > billNo) {
+                            hi = mid - 1;
+                        } else {
+                            return readRecord(buf, buf.getInt(entry + 4));
+                        }
+                    }
+                } else {
+                    Integer offset = segment.offsets.get(billNo);
+                    if (offset != null) return readRecord(map(segment), offset);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return cold.find(billNo);
+    }
+    
+    // Days before the given one with a hot segment or a cold file, newest first.
+    public synchronized List<LocalDate> daysBefore(LocalDate before) {
+        TreeSet<LocalDate> result = new TreeSet<>(segments.headMap(before).keySet());
+        for (LocalDate day : cold.days()) {
+            if (day.isBefore(before)) result.add(day);
+        }
+        return new ArrayList<>(result.descendingSet());
+    }
+    
+    // The customer's bills on the one day, oldest first, from whichever tier holds it.
+    public synchronized List<Bill> customerBillsOn(int customerId, LocalDate day) {
+        List<Bill> result = new ArrayList<>();
+        if (segments.containsKey(day)) {
+            for (Bill bill : readDay(day)) {
+                if (bill.getCustomerId() == customerId) result.add(bill);
+            }
+        } else {
+            for (Bill bill : cold.customerBillsOn(customerId, day)) {
+                if (!deleted.contains(bill.getBillNo())) result.add(bill);
+            }
+        }
+        return result;
+    }
+    
+    // Moves whole days older than the cutoff to the cold archive, one day at a time, on a
+    // background thread. Each day stays readable from the hot segment until its cold file
+    // is complete.
+    public synchronized CompletableFuture<Void> retireBefore(LocalDate cutoff) {
+        if (retirer == null) {
+            retirer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "bill-retirement");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return CompletableFuture.runAsync(() -> {
+            List<LocalDate> days;
+            synchronized (this) {
+                days = new ArrayList<>(segments.headMap(cutoff).keySet());
+            }
+            for (LocalDate day : days) {
+                try {
+                    cold.write(day, readDay(day));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                synchronized (this) {
+                    Segment segment = segments.remove(day);
+                    if (segment == active) closeActive();
+                    if (segment != null && !segment.file.delete()) {
+                        segment.file.deleteOnExit();
+                    }
+                }
+            }
+        }, retirer);
+    }
+    
+    public synchronized int maxBillNo() {
+        int max = cold.maxBillNo();
+        for (Segment segment : segments.values()) {
+            if (segment.count > 0 && segment.maxBillNo > max) max = segment.maxBillNo;
+        }
+        return max;
+    }
+    
+    public synchronized boolean isEmpty() {
+        for (Segment segment : segments.values()) {
+            if (segment.count > 0) return false;
+        }
+        return cold.isEmpty();
+    }
+    
+    private void openForAppend(LocalDate day) throws IOException {
+        closeActive();
+        Segment segment = segments.get(day);
+        if (segment == null) {
+            segment = new Segment(day, new File(dir, day + SUFFIX));
+            segment.offsets = new LinkedHashMap<>();
+            segments.put(day, segment);
+        } else if (segment.sealed) {
+            unseal(segment);
+        }
+        activeChannel = FileChannel.open(segment.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        active = segment;
+    }
+    
+    private void closeActive() {
+        if (active == null) return;
+        try {
+            activeChannel.close();
+            if (active.day.isBefore(LocalDate.now())) seal(active);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        active = null;
+        activeChannel = null;
+    }
+    
+    private boolean readFooter(Segment segment) throws IOException {
+        long size = segment.file.length();
+        segment.size = size;
+        if (size < TRAILER_SIZE) return false;
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file, "r")) {
+            raf.seek(size - TRAILER_SIZE);
+            int count = raf.readInt();
+            int indexOffset = raf.readInt();
+            int magic = raf.readInt();
+            if (magic != MAGIC || count < 0 || indexOffset < 0 || (long) indexOffset + count * 8L + TRAILER_SIZE != size) {
+                return false;
+            }
+            segment.sealed = true;
+            segment.count = count;
+            segment.indexOffset = indexOffset;
+            if (count > 0) {
+                raf.seek(indexOffset);
+                segment.minBillNo = raf.readInt();
+                raf.seek(indexOffset + (count - 1) * 8L);
+                segment.maxBillNo = raf.readInt();
+            }
+            return true;
+        }
+    }
+    
+    // Rebuilds the index of an unsealed segment and drops a torn record at its tail.
+    private void scan(Segment segment) throws IOException {
+        segment.offsets = new LinkedHashMap<>();
+        long size = segment.file.length();
+        long pos = 0;
+        if (size > 0) {
+            ByteBuffer buf = map(segment.file, size);
+            while (pos + 4 <= size) {
+                int length = buf.getInt((int) pos);
+                if (length <= 0 || pos + 4 + length > size) break;
+                index(segment, buf.getInt((int) pos + 4), (int) pos);
+                pos += 4 + length;
+            }
+        }
+        if (pos < size) {
+            try (RandomAccessFile raf = new RandomAccessFile(segment.file, "rw")) {
+                raf.setLength(pos);
+            }
+        }
+        segment.size = pos;
+    }
+    
+    private void seal(Segment segment) throws IOException {
+        List<Integer> billNos = new ArrayList<>(segment.offsets.keySet());
+        Collections.sort(billNos);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment.file, true)))) {
+            for (int billNo : billNos) {
+                out.writeInt(billNo);
+                out.writeInt(segment.offsets.get(billNo));
+            }
+            out.writeInt(billNos.size());
+            out.writeInt((int) segment.size);
+            out.writeInt(MAGIC);
+        }
+        segment.indexOffset = (int) segment.size;
+        segment.size += billNos.size() * 8L + TRAILER_SIZE;
+        segment.offsets = null;
+        segment.sealed = true;
+    }
+    
+    // Only needed when the clock goes back to a day that was already sealed.
+    private void unseal(Segment segment) throws IOException {
+        ByteBuffer buf = map(segment);
+        segment.offsets = new LinkedHashMap<>();
+        for (int i = 0; i < segment.count; i++) {
+            int entry = segment.indexOffset + i * 8;
+            segment.offsets.put(buf.getInt(entry), buf.getInt(entry + 4));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(segment.file, "rw")) {
+            raf.setLength(segment.indexOffset);
+        }
+        segment.size = segment.indexOffset;
+        segment.sealed = false;
+    }
+    
+    private static void index(Segment segment, int billNo, int offset) {
+        segment.offsets.put(billNo, offset);
+        segment.count = segment.offsets.size();
+        if (billNo < segment.minBillNo) segment.minBillNo = billNo;
+        if (billNo > segment.maxBillNo) segment.maxBillNo = billNo;
+    }
+    
+    private void addIfLive(List<Bill> result, int billNo, ByteBuffer buf, int offset) throws IOException {
+        if (!deleted.contains(billNo)) {
+            result.add(readRecord(buf, offset));
+        }
+    }
+    
+    private static ByteBuffer map(Segment segment) throws IOException {
+        return map(segment.file, segment.size);
+    }
+    
+    private static ByteBuffer map(File file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+    
+    private static Bill readRecord(ByteBuffer buf, int offset) throws IOException {
+        byte[] record = new byte[buf.getInt(offset)];
+        buf.get(offset + 4, record);
+        return readBill(new DataInputStream(new ByteArrayInputStream(record)));
+    }
+    
+    static void writeBill(DataOutput out, Bill bill) throws IOException {
+        out.writeInt(bill.getBillNo());
+        out.writeByte(RECORD_VERSION);
+        BillItemCodec.writeVarInt(out, bill.getCustomerId());
+        out.writeLong(bill.getDate().getTime());
+        out.writeUTF(bill.getCashier());
+        BillItemCodec.writeVarLong(out, bill.getTotal());
+        BillItemCodec.writeVarLong(out, bill.getAmountPaid());
+        BillItemCodec.writeVarLong(out, bill.getChange());
+        BillItemCodec.write(out, bill.getItems());
+    }
+    
+    static Bill readBill(DataInput in) throws IOException {
+        int billNo = in.readInt();
+        int version = in.readUnsignedByte();
+        if (version == 0) {
+            // Original layout: the byte just read was the high byte of an int customer id
+            int customerId = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            Date date = new Date(in.readLong());
+            String cashier = in.readUTF();
+            long total = Money.fromTaka(in.readDouble());
+            long amountPaid = Money.fromTaka(in.readDouble());
+            long change = Money.fromTaka(in.readDouble());
+            return new Bill(billNo, customerId, BillItemCodec.read(in), total, date, cashier, amountPaid, change);
+        }
+        if (version != RECORD_VERSION) {
+            throw new IOException("Unsupported bill record version " + version);
+        }
+        int customerId = BillItemCodec.readVarInt(in);
+        Date date = new Date(in.readLong());
+        String cashier = in.readUTF();
+        long total = BillItemCodec.readVarLong(in);
+        long amountPaid = BillItemCodec.readVarLong(in);
+        long change = BillItemCodec.readVarLong(in);
+        List<BillItem> items = BillItemCodec.read(in);
+        return new Bill(billNo, customerId, items, total, date, cashier, amountPaid, change);
+    }
+    
+    static LocalDate toDay(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
+
+// ---------- Cold Bill Archive ----------
+// Days that have left the retention window, one read-only file per day: <day>.cold. The
+// bill records, in bill number order, are packed into deflated blocks of about 64 KB,
+// followed by a block table of [int offset][int compressed length][int raw length], an
+// index of [int billNo][int customerId][int block][int offset in block] sorted by bill
+// number, a customer index of [int customerId][int bill index position] sorted by
+// customer, and a trailer [int blocks][int count][int blockTableOffset][int billIndexOffset]
+// [int customerIndexOffset][int MAGIC]. Only the trailers are read when the archive is
+// opened; a query maps the files it needs and inflates only the blocks holding its bills.
+class ColdBillArchive {
+    private static final int MAGIC = 0x42434F4C;
+    private static final int TRAILER_SIZE = 24;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final String SUFFIX = ".cold";
+    
+    private static class Day {
+        final LocalDate day;
+        final File file;
+        int blocks;
+        int count;
+        int blockTableOffset;
+        int billIndexOffset;
+        int customerIndexOffset;
+        int minBillNo;
+        int maxBillNo;
+        
+        Day(LocalDate day, File file) {
+            this.day = day;
+            this.file = file;
+        }
+    }
+    
+    private final File dir;
+    private final TreeMap<LocalDate, Day> days = new TreeMap<>();
+    
+    public ColdBillArchive(File dir) {
+        this.dir = dir;
+        dir.mkdirs();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                Day day = new Day(LocalDate.parse(name.substring(0, name.length() - SUFFIX.length())), file);
+                readTrailer(day);
+                days.put(day.day, day);
+            } catch (DateTimeParseException e) {
+                // Not a day file
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    public synchronized boolean contains(LocalDate day) {
+        return days.containsKey(day);
+    }
+    
+    public synchronized boolean isEmpty() {
+        return days.isEmpty();
+    }
+    
+    public synchronized int maxBillNo() {
+        int max = 0;
+        for (Day day : days.values()) {
+            if (day.count > 0 && day.maxBillNo > max) max = day.maxBillNo;
+        }
+        return max;
+    }
+    
+    // Writes the day's bills to a new file, replacing any earlier one for the same day.
+    public void write(LocalDate date, List<Bill> bills) throws IOException {
+        List<Bill> sorted = new ArrayList<>(bills);
+        sorted.sort(Comparator.comparingInt(Bill::getBillNo));
+        int n = sorted.size();
+        int[] blockOf = new int[n];
+        int[] offsetInBlock = new int[n];
+        List<int[]> blockTable = new ArrayList<>();
+        File file = new File(dir, date + SUFFIX);
+        File tmp = new File(dir, date + SUFFIX + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(BLOCK_SIZE + 4096);
+            DataOutputStream rawOut = new DataOutputStream(raw);
+            ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            Deflater deflater = new Deflater();
+            byte[] chunk = new byte[BLOCK_SIZE];
+            int position = 0;
+            try {
+                for (int i = 0; i < n; i++) {
+                    record.reset();
+                    BillArchive.writeBill(recordOut, sorted.get(i));
+                    blockOf[i] = blockTable.size();
+                    offsetInBlock[i] = raw.size();
+                    rawOut.writeInt(record.size());
+                    record.writeTo(rawOut);
+                    if (raw.size() < BLOCK_SIZE && i < n - 1) continue;
+                    deflater.reset();
+                    deflater.setInput(raw.toByteArray());
+                    deflater.finish();
+                    int compressed = 0;
+                    while (!deflater.finished()) {
+                        int len = deflater.deflate(chunk);
+                        out.write(chunk, 0, len);
+                        compressed += len;
+                    }
+                    blockTable.add(new int[] {position, compressed, raw.size()});
+                    position += compressed;
+                    raw.reset();
+                }
+            } finally {
+                deflater.end();
+            }
+            int blockTableOffset = position;
+            for (int[] block : blockTable) {
+                out.writeInt(block[0]);
+                out.writeInt(block[1]);
+                out.writeInt(block[2]);
+            }
+            int billIndexOffset = blockTableOffset + blockTable.size() * 12;
+            for (int i = 0; i < n; i++) {
+                out.writeInt(sorted.get(i).getBillNo());
+                out.writeInt(sorted.get(i).getCustomerId());
+                out.writeInt(blockOf[i]);
+                out.writeInt(offsetInBlock[i]);
+            }
+            int customerIndexOffset = billIndexOffset + n * 16;
+            Integer[] byCustomer = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                byCustomer[i] = i;
+            }
+            // Stable, so each customer's bills stay in bill number order
+            Arrays.sort(byCustomer, Comparator.comparingInt(i -> sorted.get(i).getCustomerId()));
+            for (int i : byCustomer) {
+                out.writeInt(sorted.get(i).getCustomerId());
+                out.writeInt(i);
+            }
+            out.writeInt(blockTable.size());
+            out.writeInt(n);
+            out.writeInt(blockTableOffset);
+            out.writeInt(billIndexOffset);
+            out.writeInt(customerIndexOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        FileHandler.moveIntoPlace(tmp, file);
+        Day day = new Day(date, file);
+        readTrailer(day);
+        synchronized (this) {
+            days.put(date, day);
+        }
+    }
+    
+    public synchronized List<Bill> readDay(LocalDate date) {
+        List<Bill> result = new ArrayList<>();
+        Day day = days.get(date);
+        if (day == null) return result;
+        try {
+            ByteBuffer buf = map(day);
+            for (int b = 0; b < day.blocks; b++) {
+                byte[] raw = inflate(day, buf, b);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+                while (in.available() > 0) {
+                    in.readInt();
+                    result.add(BillArchive.readBill(in));
+                }
+            }
+        } catch (IOException | DataFormatException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+    
+    public synchronized Bill find(int billNo) {
+        for (Day day : days.values()) {
+            if (day.count == 0 || billNo < day.minBillNo || billNo > day.maxBillNo) continue;
+            try {
+                ByteBuffer buf = map(day);
+                int lo = 0, hi = day.count - 1;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    int midBillNo = buf.getInt(day.billIndexOffset + mid * 16);
+                    if (midBillNo < billNo) {
+                        lo = mid + 1;
+                    } else if (midBillNo > billNo) {
+                        hi = mid - 1;
+                    } else {
+                        return read(day, buf, mid, new HashMap<>());
+                    }
+                }
+            } catch (IOException | DataFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+    
+    public synchronized Set<LocalDate> days() {
+        return new HashSet<>(days.keySet());
+    }
+    
+    // The customer's bills on the one day, oldest first.
+    public synchronized List<Bill> customerBillsOn(int customerId, LocalDate date) {
+        List<Bill> result = new ArrayList<>();
+        Day day = days.get(date);
+        if (day == null || day.count == 0) return result;
+        try {
+            ByteBuffer buf = map(day);
+            // First entry for the customer in the customer index
+            int lo = 0, hi = day.count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (buf.getInt(day.customerIndexOffset + mid * 8) < customerId) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            Map<Integer, byte[]> blocks = new HashMap<>();
+            for (int i = lo; i < day.count && buf.getInt(day.customerIndexOffset + i * 8) == customerId; i++) {
+                result.add(read(day, buf, buf.getInt(day.customerIndexOffset + i * 8 + 4), blocks));
+            }
+        } catch (IOException | DataFormatException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+    
+    private Bill read(Day day, ByteBuffer buf, int position, Map<Integer, byte[]> blocks) throws IOException, DataFormatException {
+        int entry = day.billIndexOffset + position * 16;
+        int block = buf.getInt(entry + 8);
+        byte[] raw = blocks.get(block);
+        if (raw == null) {
+            raw = inflate(day, buf, block);
+            blocks.put(block, raw);
+        }
+        int offset = buf.getInt(entry + 12);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw, offset + 4, raw.length - offset - 4));
+        return BillArchive.readBill(in);
+    }
+    
+    private static byte[] inflate(Day day, ByteBuffer buf, int block) throws DataFormatException {
+        int entry = day.blockTableOffset + block * 12;
+        byte[] compressed = new byte[buf.getInt(entry + 4)];
+        buf.get(buf.getInt(entry), compressed);
+        byte[] raw = new byte[buf.getInt(entry + 8)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                n += inflater.inflate(raw, n, raw.length - n);
+            }
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+    
+    private void readTrailer(Day day) throws IOException {
+        long size = day.file.length();
+        if (size < TRAILER_SIZE) throw new IOException(day.file + " is too short to be a cold archive file");
+        try (RandomAccessFile raf = new RandomAccessFile(day.file, "r")) {
+            raf.seek(size - TRAILER_SIZE);
+            day.blocks = raf.readInt();
+            day.count = raf.readInt();
+            day.blockTableOffset = raf.readInt();
+            day.billIndexOffset = raf.readInt();
+            day.customerIndexOffset = raf.readInt();
+            if (raf.readInt() != MAGIC || (long) day.customerIndexOffset + day.count * 8L + TRAILER_SIZE != size) {
+                throw new IOException(day.file + " is not a complete cold archive file");
+            }
+            if (day.count > 0) {
+                raf.seek(day.billIndexOffset);
+                day.minBillNo = raf.readInt();
+                raf.seek(day.billIndexOffset + (day.count - 1) * 16L);
+                day.maxBillNo = raf.readInt();
+            }
+        }
+    }
+    
+    private static ByteBuffer map(Day day) throws IOException {
+        try (FileChannel channel = FileChannel.open(day.file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, day.file.length());
+        }
+    }
+}
+
+// ---------- Daily Sales Summary ----------
+// Running totals for one day, updated once per committed or deleted bill so the
+// dashboard can read them without walking the day's bills again.
+class DailySalesSummary {
+    static class CashierTotals {
+        private int billCount;
+        private long revenue;
+        public int getBillCount() { return billCount; }
+        public long getRevenue() { return revenue; }
+    }
+    
+    private LocalDate day;
+    private int billCount;
+    private long revenue;
+    private long kgSold; // milli-units
+    private long pcsSold;
+    private final Map<String, CashierTotals> cashierTotals = new TreeMap<>();
+    private final List<Bill> bills = new ArrayList<>();
+    
+    // Starts a new day from that day's bills; the only place the bills are walked.
+    public void reset(LocalDate day, List<Bill> dayBills) {
+        this.day = day;
+        billCount = 0;
+        revenue = 0;
+        kgSold = 0;
+        pcsSold = 0;
+        cashierTotals.clear();
+        bills.clear();
+        for (Bill bill : dayBills) {
+            record(bill);
+        }
+    }
+    
+    public void record(Bill bill) {
+        if (!BillArchive.toDay(bill.getDate()).equals(day)) return;
+        bills.add(bill);
+        apply(bill, 1);
+    }
+    
+    public void remove(int billNo) {
+        for (int i = 0; i < bills.size(); i++) {
+            if (bills.get(i).getBillNo() == billNo) {
+                apply(bills.remove(i), -1);
+                return;
+            }
+        }
+    }
+    
+    private void apply(Bill bill, int sign) {
+        billCount += sign;
+        revenue += sign * bill.getTotal();
+        for (BillItem item : bill.getItems()) {
+            if ("kg".equals(item.getUnitType())) {
+                kgSold += sign * item.getQuantity();
+            } else if ("pcs".equals(item.getUnitType())) {
+                pcsSold += sign * item.getQuantity();
+            }
+        }
+        CashierTotals totals = cashierTotals.computeIfAbsent(bill.getCashier(), k -> new CashierTotals());
+        totals.billCount += sign;
+        totals.revenue += sign * bill.getTotal();
+    }
+    
+    public LocalDate getDay() { return day; }
+    public int getBillCount() { return billCount; }
+    public long getRevenue() { return revenue; }
+    public long getKgSold() { return kgSold; }
+    public long getPcsSold() { return pcsSold; }
+    public Map<String, CashierTotals> getCashierTotals() { return cashierTotals; }
+    public List<Bill> getBills() { return bills; }
+}
+
+// ---------- Inventory Status Index ----------
+// Products bucketed by stock status. A product moves between buckets from inside
+// setStock/reduceStock, so counts and the low/out-of-stock lists are always current
+// without walking the catalog.
+// Synchronized because checkout lanes change stock from their own threads.
+class InventoryStatusIndex {
+    enum Status { OUT_OF_STOCK, LOW_STOCK, IN_STOCK }
+    
+    private final Map<Status, Map<Integer, Product>> buckets = new EnumMap<>(Status.class);
+    private final Map<Integer, Status> statusById = new HashMap<>();
+    
+    public InventoryStatusIndex() {
+        for (Status status : Status.values()) {
+            buckets.put(status, new LinkedHashMap<>());
+        }
+    }
+    
+    public synchronized void rebuild(List<Product> products) {
+        for (Map<Integer, Product> bucket : buckets.values()) {
+            bucket.clear();
+        }
+        statusById.clear();
+        for (Product p : products) {
+            add(p);
+        }
+    }
+    
+    public synchronized void add(Product p) {
+        p.setStatusIndex(this);
+        update(p);
+    }
+    
+    public synchronized void remove(Product p) {
+        Status old = statusById.remove(p.getId());
+        if (old != null) buckets.get(old).remove(p.getId());
+        p.setStatusIndex(null);
+    }
+    
+    synchronized void update(Product p) {
+        Status status = statusOf(p);
+        Status old = statusById.put(p.getId(), status);
+        if (old == status) return;
+        if (old != null) buckets.get(old).remove(p.getId());
+        buckets.get(status).put(p.getId(), p);
+    }
+    
+    public static Status statusOf(Product p) {
+        if (p.getStock() <= 0) return Status.OUT_OF_STOCK;
+        if (p.isLowStock()) return Status.LOW_STOCK;
+        return Status.IN_STOCK;
+    }
+    
+    public synchronized int count(Status status) {
+        return buckets.get(status).size();
+    }
+    
+    public synchronized List<Product> list(Status status) {
+        return new ArrayList<>(buckets.get(status).values());
+    }
+}
+
+// ---------- Product Search Index ----------
+// Lower-cased trigram index over product names plus a direct id lookup. Queries of three
+// or more characters only look at products sharing the query's rarest trigram; shorter
+// queries take the names starting with them from a prefix table and the rest from the
+// postings of every one and two character substring, so no query scans the catalogue.
+// Results are ranked exact id, then name prefix, then substring, and cut at the limit.
+// Synchronized because searches run on ProductSearchWorker's thread.
+class ProductSearchIndex {
+    private static final Metrics.Histogram SEARCH_TIME = Metrics.timer("search.products");
+    
+    private static class Posting {
+        int[] ids = new int[4];
+        int size;
+        
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+        
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+    }
+    
+    private final Map<Integer, Product> byId = new LinkedHashMap<>();
+    private final Map<Integer, String> names = new HashMap<>();
+    private final Map<Long, Posting> trigrams = new HashMap<>();
+    private final Map<Long, Posting> shortGrams = new HashMap<>();
+    private final Map<String, Posting> prefixes = new HashMap<>();
+    
+    public synchronized void rebuild(List<Product> products) {
+        byId.clear();
+        names.clear();
+        trigrams.clear();
+        shortGrams.clear();
+        prefixes.clear();
+        for (Product p : products) {
+            add(p);
+        }
+    }
+    
+    public synchronized void add(Product p) {
+        byId.put(p.getId(), p);
+        index(p.getId(), p.getName().toLowerCase());
+    }
+    
+    public synchronized void remove(Product p) {
+        byId.remove(p.getId());
+        unindex(p.getId());
+    }
+    
+    // Re-indexes a product after its name was edited.
+    public synchronized void update(Product p) {
+        String name = p.getName().toLowerCase();
+        if (name.equals(names.get(p.getId()))) return;
+        unindex(p.getId());
+        index(p.getId(), name);
+    }
+    
+    public synchronized Product findById(int id) {
+        return byId.get(id);
+    }
+    
+    public synchronized List<Product> search(String query, int limit) {
+        long start = System.nanoTime();
+        List<Product> result = find(query, limit);
+        SEARCH_TIME.record(System.nanoTime() - start);
+        return result;
+    }
+    
+    private List<Product> find(String query, int limit) {
+        String q = query.trim().toLowerCase();
+        List<Product> result = new ArrayList<>();
+        if (q.isEmpty()) {
+            for (Product p : byId.values()) {
+                if (result.size() >= limit) break;
+                result.add(p);
+            }
+            return result;
+        }
+        
+        Product exact = lookupId(q);
+        if (exact != null) result.add(exact);
+        
+        List<Product> prefixMatches = new ArrayList<>();
+        List<Product> otherMatches = new ArrayList<>();
+        if (q.length() >= 3) {
+            Posting candidates = rarestTrigram(q);
+            if (candidates != null) {
+                for (int i = 0; i < candidates.size && prefixMatches.size() < limit; i++) {
+                    collect(candidates.ids[i], q, exact, limit, prefixMatches, otherMatches);
+                }
+            }
+        } else {
+            Posting starts = prefixes.get(q);
+            if (starts != null) {
+                for (int i = 0; i < starts.size && prefixMatches.size() < limit; i++) {
+                    prefixMatches.add(byId.get(starts.ids[i]));
+                }
+                prefixMatches.remove(exact);
+            }
+            // Every name here contains q, so the ones skipped as prefixes are all that stand
+            // between this loop and the limit
+            Posting containing = shortGrams.get(shortGram(q, 0, q.length()));
+            if (containing != null) {
+                for (int i = 0; i < containing.size && result.size() + prefixMatches.size() + otherMatches.size() < limit; i++) {
+                    int id = containing.ids[i];
+                    if (names.get(id).startsWith(q)) continue;
+                    Product p = byId.get(id);
+                    if (p != exact) otherMatches.add(p);
+                }
+            }
+        }
+        
+        for (Product p : prefixMatches) {
+            if (result.size() >= limit) return result;
+            result.add(p);
+        }
+        for (Product p : otherMatches) {
+            if (result.size() >= limit) return result;
+            result.add(p);
+        }
+        return result;
+    }
+    
+    private void collect(int id, String q, Product exact, int limit, List<Product> prefixMatches, List<Product> otherMatches) {
+        String name = names.get(id);
+        Product p = byId.get(id);
+        if (p == exact) return;
+        if (name.startsWith(q)) {
+            prefixMatches.add(p);
+        } else if (otherMatches.size() < limit && name.contains(q)) {
+            otherMatches.add(p);
+        }
+    }
+    
+    private Product lookupId(String q) {
+        if (q.length() > 9) return null;
+        for (int i = 0; i < q.length(); i++) {
+            if (!Character.isDigit(q.charAt(i))) return null;
+        }
+        return byId.get(Integer.parseInt(q));
+    }
+    
+    private Posting rarestTrigram(String q) {
+        Posting rarest = null;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            Posting posting = trigrams.get(trigram(q, i));
+            if (posting == null) return null;
+            if (rarest == null || posting.size < rarest.size) rarest = posting;
+        }
+        return rarest;
+    }
+    
+    private void index(int id, String name) {
+        names.put(id, name);
+        for (long gram : distinctTrigrams(name)) {
+            trigrams.computeIfAbsent(gram, k -> new Posting()).add(id);
+        }
+        for (long gram : distinctShortGrams(name)) {
+            shortGrams.computeIfAbsent(gram, k -> new Posting()).add(id);
+        }
+        for (int len = 1; len <= 2 && len <= name.length(); len++) {
+            prefixes.computeIfAbsent(name.substring(0, len), k -> new Posting()).add(id);
+        }
+    }
+    
+    private void unindex(int id) {
+        String name = names.remove(id);
+        if (name == null) return;
+        for (long gram : distinctTrigrams(name)) {
+            Posting posting = trigrams.get(gram);
+            posting.remove(id);
+            if (posting.size == 0) trigrams.remove(gram);
+        }
+        for (long gram : distinctShortGrams(name)) {
+            Posting posting = shortGrams.get(gram);
+            posting.remove(id);
+            if (posting.size == 0) shortGrams.remove(gram);
+        }
+        for (int len = 1; len <= 2 && len <= name.length(); len++) {
+            String prefix = name.substring(0, len);
+            Posting posting = prefixes.get(prefix);
+            posting.remove(id);
+            if (posting.size == 0) prefixes.remove(prefix);
+        }
+    }
+    
+    private static Set<Long> distinctTrigrams(String name) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            grams.add(trigram(name, i));
+        }
+        return grams;
+    }
+    
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+    
+    private static Set<Long> distinctShortGrams(String name) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i < name.length(); i++) {
+            grams.add(shortGram(name, i, 1));
+            if (i + 2 <= name.length()) grams.add(shortGram(name, i, 2));
+        }
+        return grams;
+    }
+    
+    // One or two characters; the length bit keeps "a" apart from "\0a".
+    private static long shortGram(String s, int i, int length) {
+        return length == 1 ? s.charAt(i) : (1L << 32) | ((long) s.charAt(i) << 16) | s.charAt(i + 1);
+    }
+}
+
+// ---------- Product Search Worker ----------
+// Runs billing-panel searches off the EDT. Keystrokes within the debounce window are
+// coalesced into one query, and every new keystroke bumps a generation number so that
+// a query overtaken by newer input is dropped instead of being published.
+class ProductSearchWorker {
+    private final ProductSearchIndex index;
+    private final int limit;
+    private final long debounceMillis;
+    private final AtomicLong generation = new AtomicLong();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "product-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> pending;
+    
+    public ProductSearchWorker(ProductSearchIndex index, int limit, long debounceMillis) {
+        this.index = index;
+        this.limit = limit;
+        this.debounceMillis = debounceMillis;
+    }
+    
+    // Called on the EDT; the callback is also run on the EDT.
+    public void submit(String query, Consumer<List<Product>> onResults) {
+        long gen = cancel();
+        pending = executor.schedule(() -> {
+            if (gen != generation.get()) return;
+            List<Product> results = index.search(query, limit);
+            SwingUtilities.invokeLater(() -> {
+                if (gen == generation.get()) onResults.accept(results);
+            });
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    // Drops any query that has not been published yet.
+    public long cancel() {
+        if (pending != null) pending.cancel(false);
+        return generation.incrementAndGet();
+    }
+}
+
+// List model for search results that swaps in a whole result set with one change event,
+// instead of one interval-added event per product.
+class ProductResultListModel extends AbstractListModel<Product> {
+    private List<Product> results = Collections.emptyList();
+    
+    public void setResults(List<Product> newResults) {
+        int changed = Math.max(results.size(), newResults.size());
+        results = newResults;
+        if (changed > 0) fireContentsChanged(this, 0, changed - 1);
+    }
+    
+    @Override
+    public int getSize() { return results.size(); }
+    
+    @Override
+    public Product getElementAt(int index) { return results.get(index); }
+}
+
+// ---------- Cart Model ----------
+// Lines of the bill being built, backing the billing table directly. The total is kept
+// in paisa as lines are added; cells are only formatted when the table paints them.
+class CartTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Product", "Qty", "Unit", "Price", "Subtotal"};
+    private final List<BillItem> lines = new ArrayList<>();
+    private long total;
+    
+    public void add(BillItem item) {
+        lines.add(item);
+        total += item.getSubtotal();
+        fireTableRowsInserted(lines.size() - 1, lines.size() - 1);
+    }
+    
+    public void clear() {
+        setLines(Collections.emptyList());
+    }
+    
+    public void setLines(List<BillItem> newLines) {
+        lines.clear();
+        lines.addAll(newLines);
+        total = 0;
+        for (BillItem item : lines) {
+            total += item.getSubtotal();
+        }
+        fireTableDataChanged();
+    }
+    
+    public List<BillItem> getLines() { return Collections.unmodifiableList(lines); }
+    public long getTotal() { return total; }
+    public boolean isEmpty() { return lines.isEmpty(); }
+    
+    @Override
+    public int getRowCount() { return lines.size(); }
+    
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+    
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        BillItem item = lines.get(row);
+        switch (column) {
+            case 0: return item.getProductName();
+            case 1: return Quantity.format(item.getQuantity());
+            case 2: return item.getUnitType();
+            case 3: return Money.format(item.getUnitPrice());
+            default: return Money.format(item.getSubtotal());
+        }
+    }
+}
+
+// ---------- Customer Models ----------
+// The customers table, over a list of the customers themselves. Cells come from each
+// customer's purchase counters and are only formatted for the rows the table paints, so
+// a million customers cost one list copy rather than a row array each.
+class CustomerTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"ID", "Name", "Phone", "Total Purchases", "Total Spent", "Last Purchase"};
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
+    private List<Customer> customers = Collections.emptyList();
+    
+    public void setCustomers(Collection<Customer> newCustomers) {
+        customers = new ArrayList<>(newCustomers);
+        fireTableDataChanged();
+    }
+    
+    public Customer customerAt(int row) { return customers.get(row); }
+    
+    @Override
+    public int getRowCount() { return customers.size(); }
+    
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+    
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        Customer c = customers.get(row);
+        switch (column) {
+            case 0: return c.getId();
+            case 1: return c.getName();
+            case 2: return c.getPhone();
+            case 3: return c.getVisits();
+            case 4: return Money.format(c.getLifetimeSpend());
+            default: return c.getLastPurchase() == 0 ? "Never" : dateFormat.format(new Date(c.getLastPurchase()));
+        }
+    }
+}
+
+// One customer's bills, newest first. The bills still in memory are there from the start;
+// older ones are read from the archive a page at a time, walking back a day at a time, on
+// a background thread once the table asks for a row past the ones loaded. Until the last
+// page is in, the row count is the customer's visit counter and rows not read yet show as
+// loading. If older bills cannot be read, paging stops and one row says why. Only used on
+// the EDT.
+class PurchaseHistoryTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Bill No", "Date", "Time", "Amount", "Items"};
+    private static final int PAGE_SIZE = 200;
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "history-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private final BillingService billing;
+    private final Customer customer;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+    private final List<Bill> rows = new ArrayList<>();
+    private final Set<Integer> inMemory = new HashSet<>();
+    private int expected;
+    private int wanted;
+    private boolean loading, complete;
+    // Why older bills could not be read; shown as the last row
+    private String error;
+    // Touched only by the loader thread
+    private List<LocalDate> olderDays;
+    private int nextDay;
+    
+    public PurchaseHistoryTableModel(BillingService billing, Customer customer) {
+        this.billing = billing;
+        this.customer = customer;
+        List<Bill> history = customer.getPurchaseHistory();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            rows.add(history.get(i));
+            inMemory.add(history.get(i).getBillNo());
+        }
+        expected = customer.getVisits();
+        complete = rows.size() >= expected;
+    }
+    
+    // Null while the row is still being read.
+    public Bill billAt(int row) {
+        return row < rows.size() ? rows.get(row) : null;
+    }
+    
+    public void remove(int row) {
+        rows.remove(row);
+        expected--;
+        fireTableRowsDeleted(row, row);
+    }
+    
+    private void loadMore() {
+        if (loading || complete) return;
+        loading = true;
+        LOADER.execute(() -> {
+            try {
+                List<Bill> page = new ArrayList<>();
+                if (olderDays == null) olderDays = billing.olderPurchaseDays();
+                while (page.size() < PAGE_SIZE && nextDay < olderDays.size()) {
+                    List<Bill> bills = billing.olderPurchases(customer, olderDays.get(nextDay++));
+                    for (int i = bills.size() - 1; i >= 0; i--) {
+                        // A day not yet retired can also be in memory
+                        if (!inMemory.contains(bills.get(i).getBillNo())) page.add(bills.get(i));
+                    }
+                }
+                boolean exhausted = nextDay >= olderDays.size();
+                SwingUtilities.invokeLater(() -> addPage(page, exhausted));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> loadFailed(e));
+            }
+        });
+    }
+    
+    private void loadFailed(RuntimeException e) {
+        loading = false;
+        complete = true;
+        error = e.getMessage() != null ? e.getMessage() : e.toString();
+        fireTableDataChanged();
+    }
+    
+    private void addPage(List<Bill> page, boolean exhausted) {
+        int before = getRowCount();
+        int first = rows.size();
+        rows.addAll(page);
+        loading = false;
+        complete = exhausted || rows.size() >= expected;
+        if (getRowCount() != before) {
+            fireTableDataChanged();
+        } else if (!page.isEmpty()) {
+            fireTableRowsUpdated(first, rows.size() - 1);
+        }
+        if (rows.size() < wanted) loadMore();
+    }
+    
+    @Override
+    public int getRowCount() {
+        if (complete) return error != null ? rows.size() + 1 : rows.size();
+        return Math.max(rows.size(), expected);
+    }
+    
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+    
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (row >= rows.size()) {
+            if (error != null) return column == 1 ? "Could not read older bills: " + error : "";
+            wanted = Math.max(wanted, row + 1);
+            loadMore();
+            return column == 1 ? "Loading..." : "";
+        }
+        Bill bill = rows.get(row);
+        switch (column) {
+            case 0: return bill.getBillNo();
+            case 1: return dateFormat.format(bill.getDate());
+            case 2: return timeFormat.format(bill.getDate());
+            case 3: return Money.format(bill.getTotal());
+            default: return bill.getItems().size() + " items";
+        }
+    }
+}
+
+// ---------- Store Repository ----------
+// In-memory store with hash indexes: id -> Customer, phone -> Customer, id -> Product and
+// billNo -> Bill. Insertion order is kept for the tables. Phone numbers are unique; the
+// index rejects a duplicate rather than relying on every caller to check first.
+// Product changes are forwarded to the inventory status and search indexes.
+class StoreRepository {
+    private final Map<Integer, Customer> customersById = new LinkedHashMap<>();
+    private final Map<String, Customer> customersByPhone = new HashMap<>();
+    private final Map<Integer, Product> productsById = new LinkedHashMap<>();
+    private final Map<Integer, Bill> billsByNo = new LinkedHashMap<>();
+    private final InventoryStatusIndex inventoryIndex = new InventoryStatusIndex();
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+    
+    // Replaces the whole store, e.g. after reading a snapshot. Bills are linked to their
+    // customers and purchase histories rebuilt.
+    public void load(Collection<Customer> customers, Collection<Product> products, Collection<Bill> bills) {
+        List<Customer> customerList = new ArrayList<>(customers);
+        List<Product> productList = new ArrayList<>(products);
+        List<Bill> billList = new ArrayList<>(bills);
+        customersById.clear();
+        customersByPhone.clear();
+        productsById.clear();
+        billsByNo.clear();
+        for (Customer c : customerList) {
+            customersById.put(c.getId(), c);
+            customersByPhone.put(c.getPhone(), c);
+        }
+        for (Product p : productList) {
+            productsById.put(p.getId(), p);
+        }
+        for (Bill b : billList) {
+            billsByNo.put(b.getBillNo(), b);
+        }
+        PurchaseHistoryIndex.rebuild(customerList, billList);
+        inventoryIndex.rebuild(productList);
+        searchIndex.rebuild(productList);
+    }
+    
+    public Collection<Customer> customers() { return Collections.unmodifiableCollection(customersById.values()); }
+    public Collection<Product> products() { return Collections.unmodifiableCollection(productsById.values()); }
+    public Collection<Bill> bills() { return Collections.unmodifiableCollection(billsByNo.values()); }
+    public InventoryStatusIndex inventory() { return inventoryIndex; }
+    public ProductSearchIndex search() { return searchIndex; }
+    
+    public Customer customerById(int id) { return customersById.get(id); }
+    public Customer customerByPhone(String phone) { return customersByPhone.get(phone); }
+    public Product productById(int id) { return productsById.get(id); }
+    public Bill billByNo(int billNo) { return billsByNo.get(billNo); }
+    
+    public void addCustomer(Customer c) {
+        if (customersByPhone.containsKey(c.getPhone())) {
+            throw new IllegalArgumentException("Customer with this phone already exists!");
+        }
+        customersById.put(c.getId(), c);
+        customersByPhone.put(c.getPhone(), c);
+    }
+    
+    public void updateCustomer(Customer c, String name, String phone) {
+        Customer owner = customersByPhone.get(phone);
+        if (owner != null && owner != c) {
+            throw new IllegalArgumentException("Another customer with this phone already exists!");
+        }
+        customersByPhone.remove(c.getPhone());
+        c.setName(name);
+        c.setPhone(phone);
+        customersByPhone.put(phone, c);
+    }
+    
+    public Customer removeCustomer(int id) {
+        Customer c = customersById.remove(id);
+        if (c != null) customersByPhone.remove(c.getPhone());
+        return c;
+    }
+    
+    public void addProduct(Product p) {
+        productsById.put(p.getId(), p);
+        inventoryIndex.add(p);
+        searchIndex.add(p);
+    }
+    
+    public void updateProduct(Product p, String name, double price) {
+        p.setName(name);
+        p.setPrice(price);
+        searchIndex.update(p);
+    }
+    
+    public Product removeProduct(int id) {
+        Product p = productsById.remove(id);
+        if (p != null) {
+            inventoryIndex.remove(p);
+            searchIndex.remove(p);
+        }
+        return p;
+    }
+    
+    // Deducts each line from its product, found by id, so the cost is O(1) per line
+    // whatever the catalog size. Every product is resolved before any stock changes, so
+    // a sale is applied in full or not at all. Returns the products touched, in line order.
+    public List<Product> deductStock(List<BillItem> items) {
+        List<Product> sold = new ArrayList<>(items.size());
+        for (BillItem item : items) {
+            Product p = productsById.get(item.getProductId());
+            if (p == null) {
+                throw new IllegalStateException("Product no longer exists: " + item.getProductName());
+            }
+            sold.add(p);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            sold.get(i).reduceStock(items.get(i).getQuantity());
+        }
+        return sold;
+    }
+    
+    // The bill must already be linked to its customer.
+    public void addBill(Bill bill) {
+        billsByNo.put(bill.getBillNo(), bill);
+        bill.getCustomer().addPurchase(bill);
+    }
+    
+    public Bill removeBill(int billNo) {
+        Bill bill = billsByNo.remove(billNo);
+        if (bill != null) bill.getCustomer().getPurchaseHistory().remove(bill);
+        return bill;
+    }
+    
+    public boolean removeBillsBefore(LocalDate cutoff) {
+        boolean removed = billsByNo.values().removeIf(bill -> BillArchive.toDay(bill.getDate()).isBefore(cutoff));
+        if (removed) {
+            PurchaseHistoryIndex.rebuild(new ArrayList<>(customersById.values()), new ArrayList<>(billsByNo.values()));
+        }
+        return removed;
+    }
+    
+    public int customerCount() { return customersById.size(); }
+    public int productCount() { return productsById.size(); }
+}
+
+// ---------- Checkout Engine ----------
+// Lets several lanes (tills) sell from one StoreRepository at the same time. A lane
+// reserves stock when a line is added, so stock minus everything held by open lanes never
+// goes below zero and two lanes cannot sell the same item twice. Products hash onto a fixed
+// set of lock stripes: a reservation locks one stripe, a commit locks the stripes of all
+// its lines in ascending order, so a sale is applied in full or not at all and commits
+// cannot deadlock. Adding or removing catalogue products is still done from one thread.
+// With a hold TTL, a lane that gets no new line for that long is treated as abandoned and
+// its reservations are released by a sweeper driven from a HoldTimerWheel.
+class CheckoutEngine {
+    private static final int STRIPES = 64;
+    private static final long SWEEP_TICK_MS = 1000;
+    
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        // productId -> quantity held by open lanes, in milli-units
+        final Map<Integer, Long> reserved = new HashMap<>();
+    }
+    
+    private final StoreRepository repository;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long holdTtlMillis;
+    private final HoldTimerWheel<Lane> expiry;
+    private volatile Consumer<Lane> expiryListener;
+    private ScheduledExecutorService sweeper;
+    
+    // Holds never expire.
+    public CheckoutEngine(StoreRepository repository) {
+        this(repository, 0);
+    }
+    
+    public CheckoutEngine(StoreRepository repository, long holdTtlMillis) {
+        this.repository = repository;
+        this.holdTtlMillis = holdTtlMillis;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        expiry = holdTtlMillis > 0
+                ? new HoldTimerWheel<>(SWEEP_TICK_MS, holdTtlMillis, System.currentTimeMillis()) : null;
+    }
+    
+    // Called with each lane whose holds were released, on the sweeper thread.
+    public void setExpiryListener(Consumer<Lane> listener) {
+        this.expiryListener = listener;
+    }
+    
+    public synchronized void startSweeper() {
+        if (expiry == null || sweeper != null) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hold-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleAtFixedRate(() -> expireHolds(System.currentTimeMillis()),
+                SWEEP_TICK_MS, SWEEP_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stopSweeper() {
+        if (sweeper != null) sweeper.shutdownNow();
+        sweeper = null;
+    }
+    
+    // Releases the holds of every lane idle past the TTL. Only the wheel slots that have
+    // come due are visited. Returns the number of lanes released.
+    public int expireHolds(long nowMillis) {
+        if (expiry == null) return 0;
+        int released = 0;
+        for (Lane lane : expiry.advance(nowMillis)) {
+            if (lane.expire(nowMillis)) {
+                released++;
+                Consumer<Lane> listener = expiryListener;
+                if (listener != null) listener.accept(lane);
+            }
+        }
+        return released;
+    }
+    
+    public Lane openLane() {
+        return new Lane();
+    }
+    
+    // Stock that is not held by any open lane.
+    public long available(Product p) {
+        Stripe stripe = stripeOf(p.getId());
+        stripe.lock.lock();
+        try {
+            return p.getStock() - stripe.reserved.getOrDefault(p.getId(), 0L);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    public long reserved(int productId) {
+        Stripe stripe = stripeOf(productId);
+        stripe.lock.lock();
+        try {
+            return stripe.reserved.getOrDefault(productId, 0L);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    private void reserve(Product p, long qty) {
+        Stripe stripe = stripeOf(p.getId());
+        stripe.lock.lock();
+        try {
+            long held = stripe.reserved.getOrDefault(p.getId(), 0L);
+            long available = p.getStock() - held;
+            if (qty > available) {
+                throw new IllegalStateException("Not enough stock! Available: "
+                        + Quantity.format(Math.max(available, 0)) + " " + p.getUnitType());
+            }
+            stripe.reserved.put(p.getId(), held + qty);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    private void release(int productId, long qty) {
+        Stripe stripe = stripeOf(productId);
+        stripe.lock.lock();
+        try {
+            releaseLocked(stripe, productId, qty);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    private static void releaseLocked(Stripe stripe, int productId, long qty) {
+        long held = stripe.reserved.getOrDefault(productId, 0L) - qty;
+        if (held > 0) {
+            stripe.reserved.put(productId, held);
+        } else {
+            stripe.reserved.remove(productId);
+        }
+    }
+    
+    private Stripe stripeOf(int productId) {
+        return stripes[productId & (STRIPES - 1)];
+    }
+    
+    // One till's open cart. Synchronized so the sweeper can release an abandoned cart
+    // while the cashier thread is using it.
+    class Lane {
+        private final List<BillItem> lines = new ArrayList<>();
+        // When the holds expire; 0 while the lane holds nothing
+        private long deadline;
+        
+        // Reserves the quantity and returns the priced line; throws IllegalStateException
+        // if the product does not have that much stock left unreserved.
+        public synchronized BillItem add(Product p, long qty) {
+            reserve(p, qty);
+            long price = Money.fromTaka(p.getPrice());
+            BillItem item = new BillItem(p.getId(), p.getName(), qty, p.getUnitType(), price, Money.times(price, qty));
+            lines.add(item);
+            if (expiry != null) {
+                deadline = System.currentTimeMillis() + holdTtlMillis;
+                expiry.schedule(this, deadline);
+            }
+            return item;
+        }
+        
+        public synchronized List<BillItem> getLines() { return new ArrayList<>(lines); }
+        
+        // Drops the cart and gives its reservations back.
+        public synchronized void cancel() {
+            releaseAll();
+        }
+        
+        synchronized boolean expire(long nowMillis) {
+            // Entries left behind in the wheel by an earlier deadline are ignored here
+            if (deadline == 0 || deadline > nowMillis) return false;
+            releaseAll();
+            return true;
+        }
+        
+        private void releaseAll() {
+            for (BillItem item : lines) {
+                release(item.getProductId(), item.getQuantity());
+            }
+            lines.clear();
+            deadline = 0;
+        }
+        
+        // Turns the reservations into stock deductions and empties the lane. Returns the
+        // products touched, in line order. expectedLines are the lines the caller is billing;
+        // if the lane no longer holds exactly those (its holds expired in the meantime) an
+        // IllegalStateException is thrown. On IllegalStateException nothing has changed.
+        public synchronized List<Product> commit(List<BillItem> expectedLines) {
+            if (!lines.equals(expectedLines)) {
+                throw new IllegalStateException("This cart was idle too long and its items were released. Please add them again.");
+            }
+            int[] order = new int[lines.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = lines.get(i).getProductId() & (STRIPES - 1);
+            }
+            Arrays.sort(order);
+            int locked = 0;
+            try {
+                for (int i = 0; i < order.length; i++) {
+                    if (i > 0 && order[i] == order[i - 1]) continue;
+                    stripes[order[i]].lock.lock();
+                    order[locked++] = order[i];
+                }
+                List<Product> sold = new ArrayList<>(lines.size());
+                Map<Integer, Long> needed = new HashMap<>();
+                for (BillItem item : lines) {
+                    Product p = repository.productById(item.getProductId());
+                    if (p == null) {
+                        throw new IllegalStateException("Product no longer exists: " + item.getProductName());
+                    }
+                    long total = needed.merge(p.getId(), item.getQuantity(), Long::sum);
+                    // Stock can have been edited down below what this lane holds
+                    if (total > p.getStock()) {
+                        throw new IllegalStateException("Not enough stock for " + p.getName());
+                    }
+                    sold.add(p);
+                }
+                for (int i = 0; i < lines.size(); i++) {
+                    BillItem item = lines.get(i);
+                    sold.get(i).reduceStock(item.getQuantity());
+                    releaseLocked(stripeOf(item.getProductId()), item.getProductId(), item.getQuantity());
+                }
+                lines.clear();
+                deadline = 0;
+                return sold;
+            } finally {
+                while (locked > 0) {
+                    stripes[order[--locked]].lock.unlock();
+                }
+            }
+        }
+    }
+}
+
+// ---------- Hold Timer Wheel ----------
+// Hashed timer wheel for reservation deadlines. Each slot holds the entries due in one
+// tick, and the wheel spans the whole TTL, so advance() only visits slots whose tick has
+// passed: expiring costs O(entries due), not O(open holds). Deadlines fire up to one tick
+// late. Superseded entries are not removed; the owner checks its current deadline instead.
+class HoldTimerWheel<T> {
+    private static final class Entry<T> {
+        final T item;
+        final long deadline;
+        
+        Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+    
+    private final long tickMillis;
+    private final List<List<Entry<T>>> slots;
+    private final int mask;
+    private long currentTick;
+    
+    public HoldTimerWheel(long tickMillis, long spanMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        int size = Integer.highestOneBit((int) Math.max(1, spanMillis / tickMillis + 1)) << 1;
+        slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ArrayList<>());
+        }
+        mask = size - 1;
+        currentTick = nowMillis / tickMillis;
+    }
+    
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(deadlineMillis / tickMillis, currentTick);
+        slots.get((int) (tick & mask)).add(new Entry<>(item, deadlineMillis));
+    }
+    
+    // Returns the items whose deadline fell in a tick that has now fully passed.
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>();
+        long nowTick = nowMillis / tickMillis;
+        // After a long stall every slot is visited once; entries further out stay put
+        int steps = (int) Math.min(nowTick - currentTick, slots.size());
+        for (int i = 0; i < steps; i++) {
+            List<Entry<T>> slot = slots.get((int) ((currentTick + i) & mask));
+            int kept = 0;
+            for (Entry<T> entry : slot) {
+                if (entry.deadline / tickMillis < nowTick) {
+                    due.add(entry.item);
+                } else {
+                    slot.set(kept++, entry);
+                }
+            }
+            slot.subList(kept, slot.size()).clear();
+        }
+        if (nowTick > currentTick) currentTick = nowTick;
+        return due;
+    }
+}
+
+// ---------- Metrics ----------
+// Process-wide counters and latency histograms for the hot paths. Metrics are looked up
+// once, into static fields, and recording is lock-free and does not allocate: counters
+// are LongAdders and histograms add to fixed log-linear buckets. export() publishes them
+// over JMX as supermarket:type=Metrics and, when -Dsupermarket.metrics.csv=<file> is set,
+// appends a row per metric to that file every -Dsupermarket.metrics.period seconds (60).
+class Metrics {
+    private static final Map<String, Object> registry = new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService dumper;
+    
+    static Counter counter(String name) {
+        return (Counter) registry.computeIfAbsent(name, n -> new Counter());
+    }
+    
+    static Histogram timer(String name) {
+        return (Histogram) registry.computeIfAbsent(name, n -> new Histogram());
+    }
+    
+    static final class Counter {
+        private final LongAdder value = new LongAdder();
+        
+        public void increment() { value.increment(); }
+        public void add(long n) { value.add(n); }
+        public long get() { return value.sum(); }
+    }
+    
+    // Latencies in nanoseconds. Values below SUB_COUNT get a bucket each; above that every
+    // power of two is split into SUB_COUNT buckets, so percentiles are within 1/16 of the
+    // true value over the whole range, as in an HDR histogram.
+    static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS) * SUB_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+        
+        public long count() { return count.sum(); }
+        public long max() { return max.get(); }
+        
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+        
+        // Upper bound of the bucket holding the given fraction (0..1) of recordings.
+        public long percentile(double fraction) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) return Math.min(upperBound(i), max());
+            }
+            return 0;
+        }
+        
+        static int bucket(long value) {
+            if (value < SUB_COUNT) return (int) value;
+            int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_COUNT - 1);
+            return (magnitude - SUB_BITS + 1) * SUB_COUNT + sub;
+        }
+        
+        static long upperBound(int bucket) {
+            if (bucket < SUB_COUNT) return bucket;
+            int magnitude = bucket / SUB_COUNT + SUB_BITS - 1;
+            long sub = bucket % SUB_COUNT;
+            return ((SUB_COUNT + sub + 1) << (magnitude - SUB_BITS)) - 1;
+        }
+    }
+    
+    public static synchronized void export() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("supermarket:type=Metrics");
+            if (!server.isRegistered(name)) server.registerMBean(new JmxView(), name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        String csv = System.getProperty("supermarket.metrics.csv");
+        if (csv != null && dumper == null) {
+            long period = Long.getLong("supermarket.metrics.period", 60);
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            dumper.scheduleAtFixedRate(() -> appendCsv(new File(csv)), period, period, TimeUnit.SECONDS);
+        }
+    }
+    
+    // One row per metric with the totals since startup; times are in microseconds.
+    static void appendCsv(File file) {
+        boolean header = !file.exists() || file.length() == 0;
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
+            if (header) out.println("time,metric,count,mean_us,p50_us,p90_us,p99_us,max_us");
+            String time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date());
+            for (Map.Entry<String, Object> e : registry.entrySet()) {
+                if (e.getValue() instanceof Counter) {
+                    out.println(time + "," + e.getKey() + "," + ((Counter) e.getValue()).get() + ",,,,,");
+                } else {
+                    Histogram h = (Histogram) e.getValue();
+                    out.printf("%s,%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n", time, e.getKey(), h.count(), h.mean() / 1e3,
+                            h.percentile(0.5) / 1e3, h.percentile(0.9) / 1e3, h.percentile(0.99) / 1e3, h.max() / 1e3);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Human-readable version of the same figures.
+    static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-28s %10s %10s %10s %10s %10s %10s%n", "Metric", "Count", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms"));
+        for (Map.Entry<String, Object> e : registry.entrySet()) {
+            if (e.getValue() instanceof Counter) {
+                sb.append(String.format("%-28s %10d%n", e.getKey(), ((Counter) e.getValue()).get()));
+            } else {
+                Histogram h = (Histogram) e.getValue();
+                sb.append(String.format("%-28s %10d %10.3f %10.3f %10.3f %10.3f %10.3f%n", e.getKey(), h.count(), h.mean() / 1e6,
+                        h.percentile(0.5) / 1e6, h.percentile(0.9) / 1e6, h.percentile(0.99) / 1e6, h.max() / 1e6));
+            }
+        }
+        return sb.toString();
+    }
+    
+    // Counters appear as read-only attributes under their own name; each histogram as
+    // <name>.count, .meanMicros, .p50Micros, .p90Micros, .p99Micros and .maxMicros.
+    private static class JmxView implements DynamicMBean {
+        private static final String[] STATS = {"count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros"};
+        
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object metric = registry.get(attribute);
+            if (metric instanceof Counter) return ((Counter) metric).get();
+            int dot = attribute.lastIndexOf('.');
+            metric = dot < 0 ? null : registry.get(attribute.substring(0, dot));
+            if (!(metric instanceof Histogram)) throw new AttributeNotFoundException(attribute);
+            Histogram h = (Histogram) metric;
+            switch (attribute.substring(dot + 1)) {
+                case "count": return (double) h.count();
+                case "meanMicros": return h.mean() / 1e3;
+                case "p50Micros": return h.percentile(0.5) / 1e3;
+                case "p90Micros": return h.percentile(0.9) / 1e3;
+                case "p99Micros": return h.percentile(0.99) / 1e3;
+                case "maxMicros": return h.max() / 1e3;
+                default: throw new AttributeNotFoundException(attribute);
+            }
+        }
+        
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Left out, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+        
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+        
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+        
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+        
+        // Rebuilt on every call so metrics created after registration show up too.
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Object> e : registry.entrySet()) {
+                if (e.getValue() instanceof Counter) {
+                    attributes.add(new MBeanAttributeInfo(e.getKey(), "java.lang.Long", "Counter", true, false, false));
+                } else {
+                    for (String stat : STATS) {
+                        attributes.add(new MBeanAttributeInfo(e.getKey() + "." + stat, "java.lang.Double", "Latency " + stat, true, false, false));
+                    }
+                }
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Supermarket hot-path metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
+
+// ---------- Slow Operation Log ----------
+// The last CAPACITY slow operations: EDT stalls reported by EdtWatchdog, and store loads
+// and saves that took longer than -Dsupermarket.slowOpMillis (100). Each entry keeps what
+// triggered it, the thread it ran on and the data sizes involved, so a freeze reported at
+// a till can be explained afterwards from the admin dashboard.
+class SlowOperationLog {
+    private static final int CAPACITY = 256;
+    private static final long THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("supermarket.slowOpMillis", 100));
+    private static final Entry[] entries = new Entry[CAPACITY];
+    private static int next;
+    private static long total;
+    
+    static final class Entry {
+        final long time;
+        final String operation;
+        final String cause;
+        final String thread;
+        final long nanos;
+        final String details;
+        final StackTraceElement[] stack;
+        
+        Entry(String operation, String cause, long nanos, String details, StackTraceElement[] stack) {
+            this.time = System.currentTimeMillis();
+            this.operation = operation;
+            this.cause = cause;
+            this.thread = Thread.currentThread().getName();
+            this.nanos = nanos;
+            this.details = details;
+            this.stack = stack;
+        }
+    }
+    
+    static boolean isSlow(long nanos) {
+        return nanos >= THRESHOLD_NANOS;
+    }
+    
+    static synchronized void record(String operation, String cause, long nanos, String details, StackTraceElement[] stack) {
+        entries[next] = new Entry(operation, cause, nanos, details, stack);
+        next = (next + 1) % CAPACITY;
+        total++;
+    }
+    
+    // Oldest first.
+    static synchronized List<Entry> entries() {
+        List<Entry> result = new ArrayList<>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            Entry e = entries[(next + i) % CAPACITY];
+            if (e != null) result.add(e);
+        }
+        return result;
+    }
+    
+    // The first caller outside the given classes, e.g. "BillingService.checkout:2741".
+    static String caller(Class<?>... skip) {
+        Set<String> skipped = new HashSet<>();
+        skipped.add(SlowOperationLog.class.getName());
+        for (Class<?> c : skip) {
+            skipped.add(c.getName());
+        }
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> !skipped.contains(f.getClassName()))
+                .findFirst()
+                .map(f -> describe(f.getClassName(), f.getMethodName(), f.getLineNumber()))
+                .orElse("unknown"));
+    }
+    
+    static String describe(String className, String method, int line) {
+        return className.substring(className.lastIndexOf('.') + 1) + "." + method + ":" + line;
+    }
+    
+    static String dump() {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        StringBuilder sb = new StringBuilder();
+        List<Entry> list = entries();
+        long recorded;
+        synchronized (SlowOperationLog.class) {
+            recorded = total;
+        }
+        sb.append(recorded).append(" slow operations recorded");
+        if (recorded > list.size()) sb.append(", last ").append(list.size()).append(" kept");
+        sb.append("\n");
+        for (Entry e : list) {
+            sb.append("\n").append(timeFormat.format(new Date(e.time)))
+                    .append("  ").append(e.operation)
+                    .append(String.format(" %.1f ms", e.nanos / 1e6))
+                    .append("  cause: ").append(e.cause)
+                    .append("  thread: ").append(e.thread).append("\n");
+            if (e.details != null) sb.append("    ").append(e.details).append("\n");
+            if (e.stack != null) {
+                for (StackTraceElement frame : e.stack) {
+                    sb.append("        at ").append(frame).append("\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
+
+// ---------- EDT Watchdog ----------
+// Posts a no-op to the Swing event queue every quarter of the threshold and checks that it
+// ran. If the event thread has not got to it within -Dsupermarket.edt.thresholdMillis (250),
+// the thread's stack is captured right away, while it is still stuck, and printed; once the
+// event thread recovers the stall is timed and logged to SlowOperationLog with that stack.
+class EdtWatchdog {
+    private static final Metrics.Histogram STALL_TIME = Metrics.timer("ui.edt.stall");
+    private final long thresholdNanos;
+    private volatile long pingPostedAt;
+    private volatile Thread edt;
+    private StackTraceElement[] stallStack;
+    private final Runnable ping = this::answered;
+    
+    EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+    
+    public static void install() {
+        long threshold = Long.getLong("supermarket.edt.thresholdMillis", 250);
+        if (threshold > 0) new EdtWatchdog(threshold).start();
+    }
+    
+    public void start() {
+        Thread thread = new Thread(this::watch, "edt-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void watch() {
+        long interval = Math.max(1, TimeUnit.NANOSECONDS.toMillis(thresholdNanos) / 4);
+        boolean reported = false;
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long posted = pingPostedAt;
+            if (posted == 0) {
+                reported = false;
+                pingPostedAt = System.nanoTime();
+                EventQueue.invokeLater(ping);
+            } else if (!reported && System.nanoTime() - posted >= thresholdNanos && edt != null) {
+                reported = true;
+                StackTraceElement[] stack = edt.getStackTrace();
+                synchronized (this) {
+                    // Answered while the stack was being taken
+                    if (pingPostedAt != posted) continue;
+                    stallStack = stack;
+                }
+                Throwable trace = new Throwable("Event dispatch thread blocked for more than "
+                        + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + " ms");
+                trace.setStackTrace(stack);
+                trace.printStackTrace();
+            }
+        }
+    }
+    
+    // Runs on the event thread.
+    private void answered() {
+        edt = Thread.currentThread();
+        long blocked;
+        StackTraceElement[] stack;
+        synchronized (this) {
+            blocked = System.nanoTime() - pingPostedAt;
+            stack = stallStack;
+            stallStack = null;
+            pingPostedAt = 0;
+        }
+        if (stack != null) {
+            STALL_TIME.record(blocked);
+            SlowOperationLog.record("EDT stall", cause(stack), blocked, null, stack);
+        }
+    }
+    
+    // The innermost frame of our own code, which is usually the listener doing the work.
+    private static String cause(StackTraceElement[] stack) {
+        String prefix = EdtWatchdog.class.getPackageName() + ".";
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith(prefix)) {
+                return SlowOperationLog.describe(frame.getClassName(), frame.getMethodName(), frame.getLineNumber());
+            }
+        }
+        return stack.length > 0 ? stack[0].toString() : "unknown";
+    }
+}
+
+// ---------- Persistence Writer ----------
+// Background thread that does the store's disk writes. Changes are encoded in memory by
+// the thread making them and handed over with commit(); each pass of the writer takes
+// every commit queued since the last one, writes their journal records in one go and
+// then syncs according to the policy, so a burst of sales costs one write and at most
+// one fsync per batch rather than per sale. Policies, from -Dsupermarket.fsync:
+//   commit      - fsync before any commit completes (the default)
+//   <N>ms       - commits complete once written; fsync at most N ms later
+//   <N>records  - commits complete once written; fsync after every N records
+// Snapshots are queued behind the commits that precede them and written by the same
+// thread. Failures complete the affected commits exceptionally and are passed to the
+// failure listener. The changes in a failed commit are already applied in memory, so its
+// records and bills stay buffered and are written again every RETRY_MILLIS, and with
+// each later commit, until the disk takes them.
+class PersistenceWriter {
+    enum Policy { COMMIT, INTERVAL, RECORDS }
+    
+    private static final Metrics.Histogram WRITE_TIME = Metrics.timer("store.writer.write");
+    private static final Metrics.Histogram FSYNC_TIME = Metrics.timer("store.writer.fsync");
+    private static final Metrics.Counter BATCHES = Metrics.counter("store.writer.batches");
+    private static final Metrics.Counter COMMITS = Metrics.counter("store.writer.commits");
+    private static final Metrics.Counter FAILURES = Metrics.counter("store.writer.failures");
+    private static final long RETRY_MILLIS = 1000;
+    
+    private static final class Pending {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final byte[] records;
+        final int recordCount;
+        final List<Bill> bills;
+        final Snapshot snapshot;
+        
+        Pending(byte[] records, int recordCount, List<Bill> bills, Snapshot snapshot) {
+            this.records = records;
+            this.recordCount = recordCount;
+            this.bills = bills;
+            this.snapshot = snapshot;
+        }
+    }
+    
+    // Writes a snapshot of the store; runs on the writer thread.
+    interface Snapshot {
+        void write() throws IOException;
+    }
+    
+    private final TransactionJournal journal;
+    private final BillArchive archive;
+    private final Policy policy;
+    private final long every;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private volatile Consumer<Throwable> failureListener = Throwable::printStackTrace;
+    private Thread thread;
+    private boolean busy;
+    private boolean closed;
+    
+    PersistenceWriter(TransactionJournal journal, BillArchive archive, Policy policy, long every) {
+        this.journal = journal;
+        this.archive = archive;
+        this.policy = policy;
+        this.every = every;
+    }
+    
+    // Reads -Dsupermarket.fsync; see the class comment.
+    static PersistenceWriter fromProperties(TransactionJournal journal, BillArchive archive) {
+        String setting = System.getProperty("supermarket.fsync", "commit").trim().toLowerCase();
+        if (setting.endsWith("ms")) {
+            return new PersistenceWriter(journal, archive, Policy.INTERVAL, Long.parseLong(setting.substring(0, setting.length() - 2).trim()));
+        }
+        if (setting.endsWith("records")) {
+            return new PersistenceWriter(journal, archive, Policy.RECORDS, Long.parseLong(setting.substring(0, setting.length() - 7).trim()));
+        }
+        if (!setting.equals("commit")) {
+            throw new IllegalArgumentException("supermarket.fsync must be commit, <N>ms or <N>records, not " + setting);
+        }
+        return new PersistenceWriter(journal, archive, Policy.COMMIT, 0);
+    }
+    
+    public void setFailureListener(Consumer<Throwable> listener) {
+        failureListener = listener;
+    }
+    
+    // The bills are appended to the archive after the journal records, so a bill never
+    // reaches the file ahead of the stock it took.
+    public CompletableFuture<Void> commit(byte[] records, int recordCount, List<Bill> bills) {
+        return enqueue(new Pending(records, recordCount, bills, null));
+    }
+    
+    public CompletableFuture<Void> snapshot(Snapshot snapshot) {
+        return enqueue(new Pending(new byte[0], 0, Collections.emptyList(), snapshot));
+    }
+    
+    private synchronized CompletableFuture<Void> enqueue(Pending pending) {
+        if (closed) {
+            pending.done.completeExceptionally(new IllegalStateException("The store has been closed"));
+            return pending.done;
+        }
+        if (thread == null) {
+            // Started on first use, so stores that are only read never get a thread
+            thread = new Thread(this::run, "store-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        queue.add(pending);
+        notifyAll();
+        return pending.done;
+    }
+    
+    // Waits until everything queued so far has been written.
+    public synchronized void drain() {
+        if (thread == null) return;
+        boolean interrupted = false;
+        while (!queue.isEmpty() || busy) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+    
+    // Writes and syncs what is queued, then stops the thread. Later commits fail.
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            t = thread;
+        }
+        if (t == null) return;
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        List<Bill> bills = new ArrayList<>();
+        long unsynced = 0;
+        long lastSync = System.nanoTime();
+        boolean failing = false;
+        // Set when a pass fails after close(), which is the last one tried
+        boolean gaveUp = false;
+        while (true) {
+            synchronized (this) {
+                busy = false;
+                notifyAll();
+                while (queue.isEmpty() && !closed) {
+                    if (failing) {
+                        try {
+                            wait(RETRY_MILLIS);
+                        } catch (InterruptedException e) {
+                            // Only close() stops the writer
+                        }
+                        break;
+                    }
+                    long waitMillis = 0;
+                    if (policy == Policy.INTERVAL && unsynced > 0) {
+                        waitMillis = every - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSync);
+                        if (waitMillis <= 0) break;
+                    }
+                    try {
+                        wait(waitMillis);
+                    } catch (InterruptedException e) {
+                        // Only close() stops the writer
+                    }
+                }
+                if (queue.isEmpty() && closed && (unsynced == 0 || gaveUp)) {
+                    if (unsynced > 0) {
+                        failureListener.accept(new IOException("Closed with " + unsynced + " records and bills not on disk"));
+                    }
+                    return;
+                }
+                batch.addAll(queue);
+                queue.clear();
+                busy = true;
+            }
+            int completed = 0;
+            int i = 0;
+            try {
+                long start = System.nanoTime();
+                for (; i < batch.size(); i++) {
+                    Pending p = batch.get(i);
+                    if (p.snapshot == null) {
+                        records.write(p.records);
+                        bills.addAll(p.bills);
+                        unsynced += p.recordCount + p.bills.size();
+                        continue;
+                    }
+                    // The commits before a snapshot are synced into the journal generation
+                    // it covers; later commits go to the next one
+                    write(records, bills);
+                    sync();
+                    unsynced = 0;
+                    lastSync = System.nanoTime();
+                    completeAll(batch, completed, i);
+                    completed = i + 1;
+                    // A failed snapshot only fails its own future. The journal keeps every
+                    // generation since the last good snapshot, so the commits after it are
+                    // still written and nothing is lost
+                    try {
+                        journal.rotate();
+                        p.snapshot.write();
+                        p.done.complete(null);
+                    } catch (IOException | RuntimeException e) {
+                        p.done.completeExceptionally(e);
+                        failureListener.accept(e);
+                    }
+                }
+                write(records, bills);
+                WRITE_TIME.record(System.nanoTime() - start);
+                boolean due;
+                synchronized (this) {
+                    due = closed;
+                }
+                switch (policy) {
+                    case COMMIT: due = true; break;
+                    case RECORDS: due |= unsynced >= every; break;
+                    default: due |= System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(every); break;
+                }
+                if (due && unsynced > 0) {
+                    sync();
+                    unsynced = 0;
+                    lastSync = System.nanoTime();
+                }
+                completeAll(batch, completed, batch.size());
+                BATCHES.increment();
+                failing = false;
+            } catch (IOException | RuntimeException e) {
+                // What was not written stays in records and bills, in order, for the retry
+                for (int j = completed; j < batch.size(); j++) {
+                    Pending p = batch.get(j);
+                    if (j > i && p.snapshot == null) {
+                        records.write(p.records, 0, p.records.length);
+                        bills.addAll(p.bills);
+                        unsynced += p.recordCount + p.bills.size();
+                    }
+                    p.done.completeExceptionally(e);
+                }
+                FAILURES.increment();
+                // Reported once per outage rather than on every retry
+                if (!failing) failureListener.accept(e);
+                failing = true;
+                synchronized (this) {
+                    gaveUp = closed;
+                }
+            }
+            batch.clear();
+        }
+    }
+    
+    // All the journal records go out before any of the bills.
+    private void write(ByteArrayOutputStream records, List<Bill> bills) throws IOException {
+        if (records.size() > 0) {
+            journal.write(records.toByteArray());
+            records.reset();
+        }
+        if (!bills.isEmpty()) {
+            archive.write(bills);
+            bills.clear();
+        }
+    }
+    
+    private void sync() throws IOException {
+        long start = System.nanoTime();
+        journal.force();
+        archive.force();
+        FSYNC_TIME.record(System.nanoTime() - start);
+    }
+    
+    private static void completeAll(List<Pending> batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            batch.get(i).done.complete(null);
+            COMMITS.increment();
+        }
+    }
+}
+
+// ---------- Supermarket Store ----------
+// Headless owner of the store state and its persistence: the in-memory repository, the
+// journal, the bill archive, today's sales summary and the checkout engine. Changes go
+// through CustomerService, InventoryService and BillingService; the Swing frame is one
+// client of those, batch jobs and benchmarks can be others.
+class SupermarketStore {
+    // Snapshot format 2 and later: customers carry their purchase counters. Older
+    // snapshots have none, and the counters are worked out from the bills once on load.
+    private static final int SNAPSHOT_FORMAT = 2;
+    private static final Metrics.Histogram LOAD_TIME = Metrics.timer("store.load");
+    private static final Metrics.Histogram SAVE_ALL_TIME = Metrics.timer("store.saveAll");
+    private static final Metrics.Histogram COMMIT_TIME = Metrics.timer("store.commit");
+    private final File directory;
+    private final StoreRepository repository = new StoreRepository();
+    private final SnapshotFiles snapshots;
+    private final TransactionJournal journal;
+    private final BillArchive billArchive;
+    private final PersistenceWriter writer;
+    private final DailySalesSummary todaySales = new DailySalesSummary();
+    private final CheckoutEngine checkout;
+    private List<User> users = new ArrayList<>();
+    private List<Bill> pendingBills = new ArrayList<>();
+    private boolean billsLoaded;
+    private int nextCustomerId = 1, nextProductId = 1, nextBillId = 1;
+    
+    // Keeps its files in the working directory.
+    public SupermarketStore(long holdTtlMillis) {
+        this(new File("."), holdTtlMillis);
+    }
+    
+    public SupermarketStore(File directory, long holdTtlMillis) {
+        this.directory = directory;
+        snapshots = new SnapshotFiles(directory, "store.snapshot");
+        journal = new TransactionJournal(file("store.journal"), 1 << 20);
+        journal.advanceTo(snapshots.newestGeneration());
+        billArchive = new BillArchive(file("bills"));
+        writer = PersistenceWriter.fromProperties(journal, billArchive);
+        checkout = new CheckoutEngine(repository, holdTtlMillis);
+    }
+    
+    private String file(String name) {
+        return new File(directory, name).getPath();
+    }
+    
+    public StoreRepository repository() { return repository; }
+    public TransactionJournal journal() { return journal; }
+    public BillArchive billArchive() { return billArchive; }
+    public CheckoutEngine checkout() { return checkout; }
+    public List<User> users() { return users; }
+    
+    int newCustomerId() { return nextCustomerId++; }
+    int newProductId() { return nextProductId++; }
+    int newBillId() { return nextBillId++; }
+    
+    // Used until a snapshot with users is loaded, and saved with the next snapshot.
+    public void initializeDefaultUsers() {
+        users.add(new User("admin", "admin123", "admin"));
+        users.add(new User("cashier", "cashier123", "cashier"));
+    }
+    
+    // Returns the matching user, or null if the credentials are wrong.
+    public User authenticate(String username, String password) {
+        for (User user : users) {
+            if (user.getUsername().equals(username) && user.authenticate(password)) {
+                return user;
+            }
+        }
+        return null;
+    }
+    
+    public void load() {
+        long start = System.nanoTime();
+        writer.drain();
+        // Snapshot plus journal is the whole state, so start from empty when there is no snapshot yet
+        List<Customer> customers = new ArrayList<>();
+        List<Product> products = new ArrayList<>();
+        long generation = 0;
+        boolean migrated = false;
+        boolean summarized = true;
+        SnapshotFiles.Loaded snapshot = snapshots.readNewest();
+        if (snapshot != null) {
+            Object c = snapshot.sections.get("customers");
+            Object p = snapshot.sections.get("products");
+            Object u = snapshot.sections.get("users");
+            if (c != null) customers = (List<Customer>) c;
+            if (p != null) products = (List<Product>) p;
+            if (u != null) users = (List<User>) u;
+            generation = snapshot.generation;
+            summarized = hasPurchaseSummaries(snapshot);
+            journal.setSnapshotBytes(snapshots.file(generation).length());
+        }
+        // Files from before snapshots and the bill archive are all read before anything is
+        // changed, so one that cannot be read stops the load with every file left as it was
+        Map<String, List<?>> legacy = billsLoaded ? Collections.emptyMap() : readLegacyFiles(snapshot == null);
+        if (snapshot == null && !legacy.isEmpty()) {
+            importLegacySnapshot(legacy, customers, products);
+            migrated = true;
+        }
+        journal.replay(customers, products, generation);
+        List<Bill> bills;
+        if (!billsLoaded) {
+            // The archive is the source of truth for bills and is kept current by appends,
+            // so it is only read once rather than on every refresh
+            if (legacy.containsKey("bills.ser")) {
+                importLegacyBills((List<Bill>) legacy.get("bills.ser"));
+                migrated = true;
+            }
+            bills = billArchive.readHot();
+            billsLoaded = true;
+        } else {
+            bills = new ArrayList<>(repository.bills());
+        }
+        repository.load(customers, products, bills);
+        // Update IDs
+        for (Customer customer : customers) {
+            if (customer.getId() >= nextCustomerId) nextCustomerId = customer.getId() + 1;
+        }
+        for (Product product : products) {
+            if (product.getId() >= nextProductId) nextProductId = product.getId() + 1;
+        }
+        if (billArchive.maxBillNo() >= nextBillId) nextBillId = billArchive.maxBillNo() + 1;
+        if (!summarized || migrated) {
+            summarizePurchases();
+        }
+        if (migrated) {
+            // The old files are only renamed once everything in them is in the new snapshot
+            try {
+                queueSnapshot("migration").join();
+            } catch (CompletionException e) {
+                throw new UncheckedIOException(new IOException("Could not save the converted store; the old files are left in place", e.getCause()));
+            }
+            for (String name : legacy.keySet()) {
+                new File(directory, name).renameTo(new File(directory, name + ".migrated"));
+            }
+        } else if (!summarized) {
+            saveAll();
+        }
+        long elapsed = System.nanoTime() - start;
+        LOAD_TIME.record(elapsed);
+        if (SlowOperationLog.isSlow(elapsed)) {
+            SlowOperationLog.record("load", SlowOperationLog.caller(SupermarketStore.class), elapsed,
+                    String.format("%,d customers, %,d products, %,d bills, %,d journal records; %s read",
+                            customers.size(), products.size(), bills.size(), journal.recordCount(),
+                            snapshotSize(generation)), null);
+        }
+    }
+    
+    private static boolean hasPurchaseSummaries(SnapshotFiles.Loaded snapshot) {
+        Object format = snapshot.sections.get("format");
+        return format != null && (Integer) format >= SNAPSHOT_FORMAT;
+    }
+    
+    // Works out every customer's purchase counters from all the bills, hot and cold. Only
+    // needed once, for a store written before the counters were kept.
+    private void summarizePurchases() {
+        for (Customer c : repository.customers()) {
+            c.setSummary(0, 0, 0);
+        }
+        for (LocalDate day : billArchive.daysBefore(LocalDate.MAX)) {
+            for (Bill bill : billArchive.readDay(day)) {
+                Customer c = repository.customerById(bill.getCustomerId());
+                if (c != null) c.recordPurchase(bill);
+            }
+        }
+    }
+    
+    // For recovery only: throws away the in-memory state and reads the snapshot, journal
+    // and every bill again. Normally the store is loaded once and kept current by writes.
+    public void reload() {
+        billsLoaded = false;
+        todaySales.reset(null, Collections.emptyList());
+        load();
+    }
+    
+    // Writes a full snapshot, after everything queued before it, and waits for it. If the
+    // snapshot cannot be written the journal is kept.
+    public void saveAll() {
+        try {
+            queueSnapshot(SlowOperationLog.caller(SupermarketStore.class)).join();
+        } catch (CompletionException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Copies the lists as of now; they are serialized later on the writer thread. Sharing
+    // the live objects would let the snapshot carry stock taken by later sales whose bills
+    // never reach the disk.
+    private CompletableFuture<Void> queueSnapshot(String cause) {
+        List<Customer> customers = new ArrayList<>(repository.customers().size());
+        for (Customer c : repository.customers()) {
+            customers.add(c.copy());
+        }
+        List<Product> products = new ArrayList<>(repository.products().size());
+        for (Product p : repository.products()) {
+            products.add(p.copy());
+        }
+        List<User> snapshotUsers = new ArrayList<>(users);
+        journal.compactionScheduled();
+        return writer.snapshot(() -> writeSnapshot(customers, products, snapshotUsers, true, cause));
+    }
+    
+    // Writes the generation the journal has just rotated to, then drops the journal files
+    // no kept snapshot needs.
+    private void writeSnapshot(List<Customer> customers, List<Product> products, List<User> users,
+            boolean summarized, String cause) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Object> sections = new LinkedHashMap<>();
+        if (summarized) sections.put("format", SNAPSHOT_FORMAT);
+        sections.put("customers", customers);
+        sections.put("products", products);
+        sections.put("users", users);
+        long generation = journal.generation();
+        journal.dropBefore(snapshots.write(generation, sections));
+        journal.setSnapshotBytes(snapshots.file(generation).length());
+        long elapsed = System.nanoTime() - start;
+        SAVE_ALL_TIME.record(elapsed);
+        if (SlowOperationLog.isSlow(elapsed)) {
+            SlowOperationLog.record("saveAll", cause, elapsed,
+                    String.format("%,d customers, %,d products, %,d users; %s written",
+                            customers.size(), products.size(), users.size(), snapshotSize(generation)), null);
+        }
+    }
+    
+    private String snapshotSize(long generation) {
+        return String.format("%.1f MB", snapshots.file(generation).length() / 1e6);
+    }
+    
+    // Folds the journal into a fresh snapshot straight from the files, without loading the
+    // bills or building the in-memory indexes. For offline use, with nothing else writing.
+    void compactJournal() {
+        List<Customer> customers = new ArrayList<>();
+        List<Product> products = new ArrayList<>();
+        List<User> snapshotUsers = users;
+        long generation = 0;
+        // Counters missing from an older snapshot are still missing from the new one, and
+        // are worked out by the next load
+        boolean summarized = true;
+        SnapshotFiles.Loaded snapshot = snapshots.readNewest();
+        if (snapshot != null) {
+            Object c = snapshot.sections.get("customers");
+            Object p = snapshot.sections.get("products");
+            Object u = snapshot.sections.get("users");
+            if (c != null) customers = (List<Customer>) c;
+            if (p != null) products = (List<Product>) p;
+            if (u != null) snapshotUsers = (List<User>) u;
+            generation = snapshot.generation;
+            summarized = hasPurchaseSummaries(snapshot);
+        }
+        journal.replay(customers, products, generation);
+        try {
+            journal.rotate();
+            writeSnapshot(customers, products, snapshotUsers, summarized, "compactJournal");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Reads whichever of the files from before snapshots exist: customers.ser, products.ser
+    // and users.ser when there is no snapshot yet, and bills.ser. Throws if one of them
+    // cannot be read.
+    private Map<String, List<?>> readLegacyFiles(boolean withSnapshotFiles) {
+        String[] names = withSnapshotFiles
+                ? new String[] {"customers.ser", "products.ser", "users.ser", "bills.ser"}
+                : new String[] {"bills.ser"};
+        Map<String, List<?>> result = new LinkedHashMap<>();
+        for (String name : names) {
+            File legacy = new File(directory, name);
+            if (!legacy.exists()) continue;
+            try {
+                Object data = FileHandler.readData(legacy);
+                if (!(data instanceof List)) throw new IOException(name + " does not hold a list");
+                result.put(name, (List<?>) data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(new IOException("Could not convert " + legacy + "; no files were changed", e));
+            }
+        }
+        return result;
+    }
+    
+    // One-time import of customers.ser, products.ser and users.ser from before snapshots
+    // had generations, together with the journal written alongside them. load() then
+    // saves them as the first generation.
+    private void importLegacySnapshot(Map<String, List<?>> legacy, List<Customer> customers, List<Product> products) {
+        if (legacy.containsKey("customers.ser")) customers.addAll((List<Customer>) legacy.get("customers.ser"));
+        if (legacy.containsKey("products.ser")) products.addAll((List<Product>) legacy.get("products.ser"));
+        if (legacy.containsKey("users.ser")) users = new ArrayList<>((List<User>) legacy.get("users.ser"));
+        try {
+            journal.importLegacy();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Hands the changes made since the last commit to the writer. The future completes
+    // once they are on disk as far as the fsync policy promises.
+    public CompletableFuture<Void> commit() {
+        long start = System.nanoTime();
+        int records = journal.pendingRecords();
+        CompletableFuture<Void> done = writer.commit(journal.takePending(), records, pendingBills);
+        pendingBills = new ArrayList<>();
+        if (journal.needsCompaction()) {
+            queueSnapshot(String.format("journal compaction after %,d records (%.1f MB), from ",
+                    journal.recordCount(), journal.byteCount() / 1e6)
+                    + SlowOperationLog.caller(SupermarketStore.class));
+        }
+        COMMIT_TIME.record(System.nanoTime() - start);
+        return done;
+    }
+    
+    // Queues the bill for the archive with the next commit.
+    public void appendBill(Bill bill) {
+        pendingBills.add(bill);
+    }
+    
+    // Write failures happen on the writer thread; the listener is called there.
+    public void setWriteFailureListener(Consumer<Throwable> listener) {
+        writer.setFailureListener(listener);
+    }
+    
+    // Writes out and syncs everything committed, then stops the writer.
+    public void close() {
+        writer.close();
+    }
+    
+    // Rolls the summary over at midnight by reading just the new day's segment.
+    public DailySalesSummary currentDaySales() {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(todaySales.getDay())) {
+            List<Bill> todayBills = billArchive.readDay(today);
+            PurchaseHistoryIndex.attach(repository.customers(), todayBills);
+            todaySales.reset(today, todayBills);
+        }
+        return todaySales;
+    }
+    
+    // One-time import of a bills.ser written before bills moved to the segment archive.
+    // Bills already in the archive, from an import that was cut short, are skipped.
+    private void importLegacyBills(List<Bill> legacyBills) {
+        List<Bill> missing = new ArrayList<>();
+        for (Bill bill : legacyBills) {
+            if (billArchive.find(bill.getBillNo()) == null) missing.add(bill);
+        }
+        missing.sort(Comparator.comparingInt(Bill::getBillNo));
+        try {
+            billArchive.write(missing);
+            billArchive.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("Could not import bills.ser; it is left in place", e));
+        }
+    }
+}
+
+// ---------- Customer Service ----------
+// Customer operations on typed values. Bad input, including a phone number that is
+// already taken, is reported as an IllegalArgumentException whose message can be shown
+// to the user as is.
+class CustomerService {
+    private final SupermarketStore store;
+    
+    public CustomerService(SupermarketStore store) {
+        this.store = store;
+    }
+    
+    public Customer findByPhone(String phone) {
+        return store.repository().customerByPhone(phone.trim());
+    }
+    
+    public Customer findById(int customerId) {
+        return store.repository().customerById(customerId);
+    }
+    
+    public Collection<Customer> all() {
+        return store.repository().customers();
+    }
+    
+    public int count() {
+        return store.repository().customerCount();
+    }
+    
+    // Customers whose phone or name (ignoring case) contains the text.
+    public List<Customer> search(String text) {
+        String lower = text.toLowerCase();
+        List<Customer> result = new ArrayList<>();
+        for (Customer c : all()) {
+            if (c.getPhone().contains(text) || c.getName().toLowerCase().contains(lower)) {
+                result.add(c);
+            }
+        }
+        return result;
+    }
+    
+    public Customer create(String name, String phone) {
+        name = name.trim();
+        phone = phone.trim();
+        if (name.isEmpty() || phone.isEmpty()) {
+            throw new IllegalArgumentException("Please enter both name and phone!");
+        }
+        if (store.repository().customerByPhone(phone) != null) {
+            throw new IllegalArgumentException("Customer with this phone already exists!");
+        }
+        Customer customer = new Customer(store.newCustomerId(), name, phone);
+        store.repository().addCustomer(customer);
+        store.journal().customerSaved(customer);
+        store.commit();
+        return customer;
+    }
+    
+    public void update(Customer customer, String name, String phone) {
+        name = name.trim();
+        phone = phone.trim();
+        if (name.isEmpty() || phone.isEmpty()) {
+            throw new IllegalArgumentException("Please enter both name and phone!");
+        }
+        store.repository().updateCustomer(customer, name, phone);
+        store.journal().customerSaved(customer);
+        store.commit();
+    }
+    
+    public void delete(int customerId) {
+        store.repository().removeCustomer(customerId);
+        store.journal().customerDeleted(customerId);
+        store.commit();
+    }
+}
+
+// ---------- Inventory Service ----------
+// Product and stock operations. Quantities are milli-units (see Quantity); pieces must be
+// whole. Bad input throws IllegalArgumentException with a displayable message.
+class InventoryService {
+    private final SupermarketStore store;
+    
+    public InventoryService(SupermarketStore store) {
+        this.store = store;
+    }
+    
+    public Product findById(int productId) {
+        return store.repository().productById(productId);
+    }
+    
+    public Collection<Product> all() {
+        return store.repository().products();
+    }
+    
+    public int productCount() {
+        return store.repository().productCount();
+    }
+    
+    public List<Product> search(String query, int limit) {
+        return store.repository().search().search(query, limit);
+    }
+    
+    public int count(InventoryStatusIndex.Status status) {
+        return store.repository().inventory().count(status);
+    }
+    
+    public List<Product> list(InventoryStatusIndex.Status status) {
+        return store.repository().inventory().list(status);
+    }
+    
+    public Product add(String name, double price, long stock, String unitType) {
+        name = name.trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Product name cannot be empty!");
+        }
+        checkQuantity(unitType, stock);
+        Product product = new Product(store.newProductId(), name, price, stock, unitType);
+        store.repository().addProduct(product);
+        store.journal().productSaved(product);
+        store.commit();
+        return product;
+    }
+    
+    public void update(Product product, String name, double price, long stock, int lowStockThreshold) {
+        name = name.trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Product name cannot be empty!");
+        }
+        checkQuantity(product.getUnitType(), stock);
+        store.repository().updateProduct(product, name, price);
+        product.setStock(stock);
+        product.setLowStockThreshold(lowStockThreshold);
+        store.journal().productSaved(product);
+        store.commit();
+    }
+    
+    public void restock(Product product, long qty) {
+        if (qty <= 0) {
+            throw new IllegalArgumentException("Please enter a positive quantity!");
+        }
+        checkQuantity(product.getUnitType(), qty);
+        product.setStock(product.getStock() + qty);
+        store.journal().stockChanged(product);
+        store.commit();
+    }
+    
+    public void delete(int productId) {
+        store.repository().removeProduct(productId);
+        store.journal().productDeleted(productId);
+        store.commit();
+    }
+    
+    static void checkQuantity(String unitType, long qty) {
+        if ("pcs".equals(unitType) && !Quantity.isWhole(qty)) {
+            throw new IllegalArgumentException("For pieces, quantity must be a whole number!");
+        }
+    }
+}
+
+// ---------- Billing Service ----------
+// Cart and bill operations. A cart is a CheckoutEngine lane, so adding a line reserves its
+// stock and checkout() turns the reservations into a committed bill. Bad input throws
+// IllegalArgumentException; a cart that can no longer be billed as shown (short stock, an
+// expired hold, a deleted product) throws IllegalStateException.
+class BillingService {
+    private static final int RETENTION_DAYS = 30;
+    private static final Metrics.Histogram CHECKOUT_TIME = Metrics.timer("checkout.commit");
+    private static final Metrics.Counter CHECKOUTS_REFUSED = Metrics.counter("checkout.refused");
+    private final SupermarketStore store;
+    private LocalDate retentionSweptOn;
+    
+    public BillingService(SupermarketStore store) {
+        this.store = store;
+    }
+    
+    public CheckoutEngine.Lane openCart() {
+        return store.checkout().openLane();
+    }
+    
+    public BillItem addToCart(CheckoutEngine.Lane cart, Product product, long qty) {
+        if (qty <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0!");
+        }
+        InventoryService.checkQuantity(product.getUnitType(), qty);
+        return cart.add(product, qty);
+    }
+    
+    // Bills exactly the given lines of the cart and empties it. The stock and the bill are
+    // updated in memory before this returns; the future completes once the bill is on disk.
+    public CompletableFuture<Bill> checkout(CheckoutEngine.Lane cart, List<BillItem> lines, Customer customer, long amountPaid, String cashier) {
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer not found!");
+        }
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("No items in the bill!");
+        }
+        long total = 0;
+        for (BillItem item : lines) {
+            total += item.getSubtotal();
+        }
+        if (amountPaid < total) {
+            throw new IllegalArgumentException("Amount paid is less than total amount!");
+        }
+        
+        // Turn the cart's reservations into stock deductions
+        long start = System.nanoTime();
+        List<Product> changed;
+        try {
+            changed = cart.commit(lines);
+        } catch (IllegalStateException e) {
+            CHECKOUTS_REFUSED.increment();
+            throw e;
+        }
+        for (Product p : changed) {
+            store.journal().stockChanged(p);
+        }
+        Bill bill = new Bill(store.newBillId(), customer, new ArrayList<>(lines), total, new Date(), cashier, amountPaid, amountPaid - total);
+        store.repository().addBill(bill);
+        customer.recordPurchase(bill);
+        store.journal().customerSummary(customer);
+        // Roll the summary over before appending, so a fresh read of today cannot count this bill twice
+        DailySalesSummary today = store.currentDaySales();
+        store.appendBill(bill);
+        today.record(bill);
+        CompletableFuture<Void> saved = store.commit();
+        CHECKOUT_TIME.record(System.nanoTime() - start);
+        return saved.thenApply(v -> bill);
+    }
+    
+    public Bill findBill(int billNo) {
+        // Recent bills may still be queued for the archive
+        Bill bill = store.repository().billByNo(billNo);
+        return bill != null ? bill : store.billArchive().find(billNo);
+    }
+    
+    // Removes the bill from the archive, the bill index, its customer's history and
+    // counters, and today's totals.
+    public void deleteBill(int billNo) {
+        Bill bill = findBill(billNo);
+        store.repository().removeBill(billNo);
+        store.billArchive().delete(billNo);
+        store.currentDaySales().remove(billNo);
+        Customer customer = bill != null ? store.repository().customerById(bill.getCustomerId()) : null;
+        if (customer != null) {
+            long last = customer.getLastPurchase();
+            if (bill.getDate().getTime() >= last) last = latestPurchase(customer);
+            customer.removePurchase(bill, last);
+            store.journal().customerSummary(customer);
+            store.commit();
+        }
+    }
+    
+    // When the customer's newest bill is deleted: the newest one left in memory, or else the
+    // newest in the archive, found by walking back a day at a time. 0 if there is none.
+    private long latestPurchase(Customer customer) {
+        List<Bill> history = customer.getPurchaseHistory();
+        if (!history.isEmpty()) return history.get(history.size() - 1).getDate().getTime();
+        if (customer.getVisits() <= 1) return 0;
+        for (LocalDate day : olderPurchaseDays()) {
+            List<Bill> bills = olderPurchases(customer, day);
+            if (!bills.isEmpty()) return bills.get(bills.size() - 1).getDate().getTime();
+        }
+        return 0;
+    }
+    
+    // Only the last RETENTION_DAYS days are kept in memory. Older bills are moved to the
+    // cold archive and read from there a day at a time; see olderPurchases.
+    public void retireOldBills() {
+        // Retention works on whole days so that old segments can be moved whole, and
+        // nothing new can expire until the date changes
+        LocalDate today = LocalDate.now();
+        if (today.equals(retentionSweptOn)) return;
+        LocalDate cutoff = retentionCutoff();
+        store.repository().removeBillsBefore(cutoff);
+        store.billArchive().retireBefore(cutoff).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+        retentionSweptOn = today;
+    }
+    
+    // Days before the retention window that have bills on disk, newest first.
+    public List<LocalDate> olderPurchaseDays() {
+        return store.billArchive().daysBefore(retentionCutoff());
+    }
+    
+    // The customer's bills on one of those days, read from disk, oldest first. Safe to call
+    // off the EDT.
+    public List<Bill> olderPurchases(Customer customer, LocalDate day) {
+        List<Bill> bills = store.billArchive().customerBillsOn(customer.getId(), day);
+        for (Bill bill : bills) {
+            bill.setCustomer(customer);
+        }
+        return bills;
+    }
+    
+    private static LocalDate retentionCutoff() {
+        return LocalDate.now().minusDays(RETENTION_DAYS);
+    }
+    
+    public DailySalesSummary todaySales() {
+        return store.currentDaySales();
+    }
+}
+
+// ---------- JSON ----------
+// Just enough JSON for the checkout server and its load generator: flat objects (or an
+// array of them) whose values are strings, numbers, booleans or null. Values come back
+// as their text; malformed input throws IllegalArgumentException.
+class Json {
+    private final String text;
+    private int pos;
+    
+    private Json(String text) {
+        this.text = text;
+    }
+    
+    public static Map<String, String> parseObject(String text) {
+        Json json = new Json(text);
+        Map<String, String> result = json.object();
+        json.end();
+        return result;
+    }
+    
+    public static List<Map<String, String>> parseArray(String text) {
+        Json json = new Json(text);
+        List<Map<String, String>> result = new ArrayList<>();
+        json.expect('[');
+        if (!json.peek(']')) {
+            do {
+                result.add(json.object());
+            } while (json.peek(','));
+            json.expect(']');
+        } else {
+            json.expect(']');
+        }
+        json.end();
+        return result;
+    }
+    
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+    
+    private Map<String, String> object() {
+        Map<String, String> result = new LinkedHashMap<>();
+        expect('{');
+        if (peek('}')) {
+            expect('}');
+            return result;
+        }
+        do {
+            String key = string();
+            expect(':');
+            result.put(key, value());
+        } while (peek(','));
+        expect('}');
+        return result;
+    }
+    
+    private String value() {
+        skipSpace();
+        if (pos < text.length() && text.charAt(pos) == '"') return string();
+        int start = pos;
+        while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) pos++;
+        String literal = text.substring(start, pos);
+        if (literal.isEmpty()) throw error("value expected");
+        return "null".equals(literal) ? null : literal;
+    }
+    
+    private String string() {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= text.length()) throw error("unterminated string");
+            char ch = text.charAt(pos++);
+            if (ch == '"') return sb.toString();
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+            if (pos >= text.length()) throw error("unterminated string");
+            char esc = text.charAt(pos++);
+            switch (esc) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) throw error("bad escape");
+                    sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: sb.append(esc);
+            }
+        }
+    }
+    
+    // Consumes ch if it is next; leading whitespace is skipped either way.
+    private boolean peek(char ch) {
+        skipSpace();
+        if (pos < text.length() && text.charAt(pos) == ch) {
+            if (ch == ',') pos++;
+            return true;
+        }
+        return false;
+    }
+    
+    private void expect(char ch) {
+        skipSpace();
+        if (pos >= text.length() || text.charAt(pos) != ch) throw error("'" + ch + "' expected");
+        pos++;
+    }
+    
+    private void end() {
+        skipSpace();
+        if (pos != text.length()) throw error("unexpected trailing content");
+    }
+    
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+    
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Malformed JSON at " + pos + ": " + message);
+    }
+}
+
+// ---------- Checkout Server ----------
+// Embedded HTTP/JSON front end, so any number of tills can share one store:
+//     java -cp <classes> supermarket.CheckoutServer [port]
+// The server process is then the only owner of the store files. Requests run on a fixed
+// pool of REQUEST_THREADS platform threads. Reads share a read lock and anything
+// that changes customers, the catalogue or bills takes the write lock; adding a cart line
+// only needs the read lock, since reservations are guarded by the checkout engine.
+//     GET    /products?q=&limit=      search, as a JSON array
+//     GET    /products/{id}
+//     POST   /products                {"name", "price", "stock", "unit"}
+//     GET    /customers?phone=
+//     POST   /customers               {"phone", "name"}: find, or add if new
+//     POST   /carts                   opens a cart: {"cart": id}
+//     POST   /carts/{id}/items        {"productId", "quantity"}
+//     POST   /carts/{id}/checkout     {"phone", "amountPaid", "cashier"}
+//     DELETE /carts/{id}
+//     GET    /stats                   dashboard figures
+// Amounts are in taka and quantities in units, both as JSON numbers. Errors come back as
+// {"error": message} with 400 for bad input, 404 for unknown ids and 409 for conflicts.
+class CheckoutServer {
+    private static final long HOLD_TTL_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final int MAX_LIMIT = 1000;
+    // The build targets Java 17, which has no virtual threads
+    private static final int REQUEST_THREADS = 64;
+    
+    private static class HttpError extends RuntimeException {
+        final int status;
+        
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+    
+    private final SupermarketStore store = new SupermarketStore(HOLD_TTL_MS);
+    private final CustomerService customers = new CustomerService(store);
+    private final InventoryService inventory = new InventoryService(store);
+    private final BillingService billing = new BillingService(store);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, CheckoutEngine.Lane> carts = new ConcurrentHashMap<>();
+    private final Map<CheckoutEngine.Lane, Long> cartIds = new ConcurrentHashMap<>();
+    private final AtomicLong nextCartId = new AtomicLong(1);
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Metrics.export();
+        CheckoutServer checkoutServer = new CheckoutServer();
+        checkoutServer.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(checkoutServer::stop));
+        System.out.println("Checkout server listening on http://localhost:" + port + "/");
+    }
+    
+    public void start(int port) throws IOException {
+        store.load();
+        store.checkout().setExpiryListener(lane -> {
+            Long id = cartIds.remove(lane);
+            if (id != null) carts.remove(id);
+        });
+        store.checkout().startSweeper();
+        // Without this, small responses sit behind Nagle's algorithm and the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(port), 256);
+        requestExecutor = Executors.newFixedThreadPool(REQUEST_THREADS);
+        server.setExecutor(requestExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+    
+    // Stops accepting requests and writes a final snapshot.
+    public void stop() {
+        if (server != null) server.stop(1);
+        if (requestExecutor != null) requestExecutor.shutdown();
+        store.checkout().stopSweeper();
+        lock.writeLock().lock();
+        try {
+            store.saveAll();
+            store.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath().split("/"), exchange);
+        } catch (HttpError e) {
+            status = e.status;
+            body = errorJson(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = errorJson(e.getMessage());
+        } catch (IllegalStateException e) {
+            status = 409;
+            body = errorJson(e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            status = 500;
+            body = errorJson("Internal error");
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    // path[0] is the empty segment before the leading slash.
+    private String route(String method, String[] path, HttpExchange exchange) throws IOException {
+        String resource = path.length > 1 ? path[1] : "";
+        switch (resource) {
+            case "products":
+                if (path.length == 2 && "GET".equals(method)) return searchProducts(query(exchange));
+                if (path.length == 2 && "POST".equals(method)) return addProduct(body(exchange));
+                if (path.length == 3 && "GET".equals(method)) return getProduct(id(path[2]));
+                break;
+            case "customers":
+                if (path.length == 2 && "GET".equals(method)) return getCustomer(query(exchange).get("phone"));
+                if (path.length == 2 && "POST".equals(method)) return findOrAddCustomer(body(exchange));
+                break;
+            case "carts":
+                if (path.length == 2 && "POST".equals(method)) return openCart();
+                if (path.length == 3 && "DELETE".equals(method)) return cancelCart(id(path[2]));
+                if (path.length == 4 && "POST".equals(method) && "items".equals(path[3])) return addToCart(id(path[2]), body(exchange));
+                if (path.length == 4 && "POST".equals(method) && "checkout".equals(path[3])) return checkout(id(path[2]), body(exchange));
+                break;
+            case "stats":
+                if (path.length == 2 && "GET".equals(method)) return stats();
+                break;
+            default:
+                break;
+        }
+        throw new HttpError(404, "No such endpoint: " + method + " " + String.join("/", path));
+    }
+    
+    private String searchProducts(Map<String, String> params) {
+        String q = params.getOrDefault("q", "");
+        int limit = params.containsKey("limit") ? Math.min(Integer.parseInt(params.get("limit")), MAX_LIMIT) : 100;
+        lock.readLock().lock();
+        try {
+            StringBuilder sb = new StringBuilder("[");
+            for (Product p : inventory.search(q, limit)) {
+                if (sb.length() > 1) sb.append(',');
+                appendProduct(sb, p);
+            }
+            return sb.append(']').toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private String getProduct(int productId) {
+        lock.readLock().lock();
+        try {
+            return appendProduct(new StringBuilder(), product(productId)).toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private String addProduct(Map<String, String> body) {
+        lock.writeLock().lock();
+        try {
+            Product p = inventory.add(required(body, "name"), Double.parseDouble(required(body, "price")),
+                    Quantity.parse(required(body, "stock")), required(body, "unit"));
+            return appendProduct(new StringBuilder(), p).toString();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private String getCustomer(String phone) {
+        if (phone == null) throw new IllegalArgumentException("phone is required");
+        lock.readLock().lock();
+        try {
+            Customer c = customers.findByPhone(phone);
+            if (c == null) throw new HttpError(404, "Customer not found!");
+            return customerJson(c);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private String findOrAddCustomer(Map<String, String> body) {
+        String phone = required(body, "phone");
+        lock.writeLock().lock();
+        try {
+            Customer c = customers.findByPhone(phone);
+            if (c == null) c = customers.create(required(body, "name"), phone);
+            return customerJson(c);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private String openCart() {
+        CheckoutEngine.Lane lane = billing.openCart();
+        long id = nextCartId.getAndIncrement();
+        carts.put(id, lane);
+        cartIds.put(lane, id);
+        return "{\"cart\":" + id + "}";
+    }
+    
+    private String cancelCart(long cartId) {
+        CheckoutEngine.Lane lane = cart(cartId);
+        lane.cancel();
+        carts.remove(cartId);
+        cartIds.remove(lane);
+        return "{\"cart\":" + cartId + ",\"cancelled\":true}";
+    }
+    
+    private String addToCart(long cartId, Map<String, String> body) {
+        CheckoutEngine.Lane lane = cart(cartId);
+        int productId = Integer.parseInt(required(body, "productId"));
+        long qty = Quantity.parse(required(body, "quantity"));
+        lock.readLock().lock();
+        try {
+            BillItem item = billing.addToCart(lane, product(productId), qty);
+            long total = 0;
+            for (BillItem line : lane.getLines()) {
+                total += line.getSubtotal();
+            }
+            return "{\"cart\":" + cartId + ",\"productId\":" + item.getProductId()
+                    + ",\"quantity\":" + Quantity.format(item.getQuantity())
+                    + ",\"subtotal\":" + Money.plain(item.getSubtotal())
+                    + ",\"total\":" + Money.plain(total) + "}";
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private String checkout(long cartId, Map<String, String> body) {
+        CheckoutEngine.Lane lane = cart(cartId);
+        long amountPaid = Money.parse(required(body, "amountPaid"));
+        String cashier = body.getOrDefault("cashier", "server");
+        lock.writeLock().lock();
+        CompletableFuture<Bill> saved;
+        try {
+            // The first checkout of each day moves bills past the retention window out of memory
+            billing.retireOldBills();
+            saved = billing.checkout(lane, lane.getLines(), customers.findByPhone(required(body, "phone")), amountPaid, cashier);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        carts.remove(cartId);
+        cartIds.remove(lane);
+        // Waited for outside the lock, so other tills' bills can join the same group commit
+        Bill bill = saved.join();
+        return "{\"billNo\":" + bill.getBillNo() + ",\"items\":" + bill.getItems().size()
+                + ",\"total\":" + Money.plain(bill.getTotal())
+                + ",\"change\":" + Money.plain(bill.getChange()) + "}";
+    }
+    
+    private String stats() {
+        // The summary rolls over to a new day on first use, so this is a write
+        lock.writeLock().lock();
+        try {
+            DailySalesSummary today = billing.todaySales();
+            return "{\"products\":" + inventory.productCount()
+                    + ",\"lowStock\":" + inventory.count(InventoryStatusIndex.Status.LOW_STOCK)
+                    + ",\"outOfStock\":" + inventory.count(InventoryStatusIndex.Status.OUT_OF_STOCK)
+                    + ",\"customers\":" + customers.count()
+                    + ",\"todayBills\":" + today.getBillCount()
+                    + ",\"todayRevenue\":" + Money.plain(today.getRevenue())
+                    + ",\"todayKg\":" + Quantity.format(today.getKgSold())
+                    + ",\"todayPcs\":" + Quantity.format(today.getPcsSold())
+                    + ",\"openCarts\":" + carts.size() + "}";
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private Product product(int productId) {
+        Product p = inventory.findById(productId);
+        if (p == null) throw new HttpError(404, "Product not found: " + productId);
+        return p;
+    }
+    
+    private CheckoutEngine.Lane cart(long cartId) {
+        CheckoutEngine.Lane lane = carts.get(cartId);
+        if (lane == null) throw new HttpError(404, "No open cart " + cartId + " (it may have expired)");
+        return lane;
+    }
+    
+    private static StringBuilder appendProduct(StringBuilder sb, Product p) {
+        return sb.append("{\"id\":").append(p.getId())
+                .append(",\"name\":").append(Json.quote(p.getName()))
+                .append(",\"price\":").append(Money.plain(Money.fromTaka(p.getPrice())))
+                .append(",\"stock\":").append(Quantity.format(p.getStock()))
+                .append(",\"unit\":").append(Json.quote(p.getUnitType()))
+                .append(",\"status\":").append(Json.quote(InventoryStatusIndex.statusOf(p).name()))
+                .append('}');
+    }
+    
+    private static String customerJson(Customer c) {
+        return "{\"id\":" + c.getId() + ",\"name\":" + Json.quote(c.getName())
+                + ",\"phone\":" + Json.quote(c.getPhone())
+                + ",\"purchases\":" + c.getVisits() + "}";
+    }
+    
+    private static String errorJson(String message) {
+        return "{\"error\":" + Json.quote(message == null ? "" : message) + "}";
+    }
+    
+    private static String required(Map<String, String> body, String key) {
+        String value = body.get(key);
+        if (value == null) throw new IllegalArgumentException(key + " is required");
+        return value;
+    }
+    
+    private static int id(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Bad id: " + segment);
+        }
+    }
+    
+    private static Map<String, String> body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return text.isBlank() ? new HashMap<>() : Json.parseObject(text);
+        }
+    }
+    
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
+
+// ---------- Checkout Load Generator ----------
+// Drives a running CheckoutServer from many simulated tills over localhost:
+//     java -cp <classes> supermarket.CheckoutLoadGenerator [baseUrl] [tills] [billsPerTill]
+// Each till repeatedly opens a cart, adds one to five lines and checks out. Latency is
+// measured per bill, from opening the cart to the checkout response. If the store has
+// no products yet, a small catalogue with plenty of stock is added first.
+class CheckoutLoadGenerator {
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int tills = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int billsPerTill = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(Executors.newFixedThreadPool(tills)).build();
+        
+        List<Integer> productIds = new ArrayList<>();
+        for (Map<String, String> p : Json.parseArray(call(client, "GET", baseUrl + "/products?limit=1000", null))) {
+            if (Quantity.parse(p.get("stock")) > 1000 * Quantity.ONE) productIds.add(Integer.parseInt(p.get("id")));
+        }
+        if (productIds.isEmpty()) {
+            for (int i = 1; i <= 200; i++) {
+                String body = "{\"name\":\"Load item " + i + "\",\"price\":" + (10 + i % 90)
+                        + ",\"stock\":10000000,\"unit\":\"" + (i % 3 == 0 ? "kg" : "pcs") + "\"}";
+                productIds.add(Integer.parseInt(Json.parseObject(call(client, "POST", baseUrl + "/products", body)).get("id")));
+            }
+        }
+        for (int t = 0; t < tills; t++) {
+            call(client, "POST", baseUrl + "/customers", "{\"phone\":\"0199" + (1000000 + t) + "\",\"name\":\"Load till " + t + "\"}");
+        }
+        
+        long[][] latencies = new long[tills][billsPerTill];
+        AtomicLong failures = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(tills);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < tills; t++) {
+            int till = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(till);
+                String phone = "0199" + (1000000 + till);
+                for (int b = 0; b < billsPerTill; b++) {
+                    long billStart = System.nanoTime();
+                    try {
+                        String cart = Json.parseObject(call(client, "POST", baseUrl + "/carts", "")).get("cart");
+                        int lines = 1 + random.nextInt(5);
+                        for (int l = 0; l < lines; l++) {
+                            int productId = productIds.get(random.nextInt(productIds.size()));
+                            call(client, "POST", baseUrl + "/carts/" + cart + "/items",
+                                    "{\"productId\":" + productId + ",\"quantity\":1}");
+                        }
+                        call(client, "POST", baseUrl + "/carts/" + cart + "/checkout",
+                                "{\"phone\":\"" + phone + "\",\"amountPaid\":100000,\"cashier\":\"till" + till + "\"}");
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[till][b] = System.nanoTime() - billStart;
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        
+        long[] all = new long[tills * billsPerTill];
+        for (int t = 0; t < tills; t++) {
+            System.arraycopy(latencies[t], 0, all, t * billsPerTill, billsPerTill);
+        }
+        Arrays.sort(all);
+        System.out.printf("tills=%d  bills=%,d  failed=%,d  %.1f s  %,.0f bills/sec%n",
+                tills, all.length, failures.get(), seconds, all.length / seconds);
+        System.out.printf("checkout latency  p50=%.2f ms  p99=%.2f ms  max=%.2f ms%n",
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[all.length - 1] / 1e6);
+        System.exit(0);
+    }
+    
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+    
+    private static String call(HttpClient client, String method, String url, String body) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+        request.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException(method + " " + url + " -> " + response.statusCode() + " " + response.body());
+        }
+        return response.body();
+    }
+}
+
+// ---------- Store Data Generator ----------
+// Writes a synthetic store at production scale into an empty directory:
+//     java -cp <classes> supermarket.StoreDataGenerator <dir> [products] [customers] [days] [billsPerHour] [seed]
+// Defaults are 100k products, 1M customers and 30 days of bills at 2,000 an hour on
+// average, busier in the evening. Product popularity is Zipfian, as is how often a
+// customer comes back; about a third of the catalogue is sold by the kg. Bills run up to
+// the current time, so on a given day the same seed always produces the same files.
+// Products and customers are streamed into the journal and bills into the day segments of
+// the archive, so nothing but the catalogue is held while generating. Each bill's customer,
+// time and total also go to a scratch file, from which the purchase counters are summed a
+// chunk of customers at a time. At the end the journal is folded into a snapshot, as the
+// app itself would on its first compaction.
+class StoreDataGenerator {
+    private static final int OPENING_HOUR = 9;
+    private static final int SUMMARY_CHUNK = 250_000;
+    // Relative traffic for each opening hour, 9:00 to 22:00; averages to 1
+    private static final double[] HOURLY_TRAFFIC = {0.5, 0.7, 0.9, 1.0, 1.0, 0.9, 0.8, 0.9, 1.1, 1.3, 1.4, 1.2, 0.8};
+    private static final String[] BRANDS = {"Fresh", "Pran", "Teer", "Rupchanda", "Radhuni", "Aarong", "Ifad",
+            "Bashundhara", "ACI", "Square", "Meril", "Olympic", "Danish", "Igloo", "Nestle", "Unilever"};
+    private static final String[] KG_KINDS = {"Rice", "Miniket Rice", "Dal", "Sugar", "Salt", "Flour", "Atta",
+            "Potato", "Onion", "Garlic", "Ginger", "Chicken", "Beef", "Mutton", "Rui Fish", "Hilsa", "Shrimp", "Tomato"};
+    private static final String[] PCS_KINDS = {"Soybean Oil 1L", "Mustard Oil 500ml", "Milk 1L", "Tea 400g",
+            "Soap", "Shampoo", "Toothpaste", "Biscuit", "Noodles", "Juice 250ml", "Egg 12pcs", "Chanachur",
+            "Detergent 1kg", "Ketchup", "Bread", "Butter", "Ice Cream", "Chocolate", "Coffee", "Tissue"};
+    private static final String[] FIRST_NAMES = {"Abdul", "Rahim", "Karim", "Fatema", "Ayesha", "Nusrat", "Tanvir",
+            "Sadia", "Rafiq", "Jamal", "Shirin", "Hasan", "Mitu", "Sabbir", "Farhana", "Imran", "Ruma", "Arif"};
+    private static final String[] LAST_NAMES = {"Hossain", "Islam", "Rahman", "Ahmed", "Khan", "Akter", "Begum",
+            "Chowdhury", "Sarker", "Uddin", "Alam", "Miah", "Das", "Roy", "Haque"};
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: StoreDataGenerator <dir> [products] [customers] [days] [billsPerHour] [seed]");
+            System.exit(2);
+        }
+        File dir = new File(args[0]);
+        int productCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int customerCount = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        int days = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int billsPerHour = args.length > 4 ? Integer.parseInt(args[4]) : 2_000;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+        String[] existing = dir.list();
+        if (existing != null && existing.length > 0) {
+            System.err.println(dir + " is not empty; refusing to mix generated data into an existing store");
+            System.exit(1);
+        }
+        dir.mkdirs();
+        
+        long start = System.nanoTime();
+        Random random = new Random(seed);
+        SupermarketStore store = new SupermarketStore(dir, 0);
+        TransactionJournal journal = store.journal();
+        
+        // Catalogue, kept for pricing bill lines
+        Product[] catalog = new Product[productCount];
+        for (int i = 0; i < productCount; i++) {
+            int id = store.newProductId();
+            boolean kg = random.nextInt(3) == 0;
+            String kind = kg ? KG_KINDS[random.nextInt(KG_KINDS.length)] : PCS_KINDS[random.nextInt(PCS_KINDS.length)];
+            String name = BRANDS[random.nextInt(BRANDS.length)] + " " + kind + " " + id;
+            double price = kg ? 40 + random.nextInt(1160) : 10 + random.nextInt(790);
+            // Mostly well stocked; a few percent low or out of stock
+            int roll = random.nextInt(100);
+            long stock = roll < 2 ? 0 : roll < 7 ? 1 + random.nextInt(5) : 20 + random.nextInt(480);
+            stock *= Quantity.ONE;
+            if (kg && stock > 0) stock += random.nextInt(1000);
+            catalog[i] = new Product(id, name, price, stock, kg ? "kg" : "pcs");
+            journal.productSaved(catalog[i]);
+            if (journal.pendingRecords() == 10_000) journal.write(journal.takePending());
+        }
+        
+        // Ids are handed out in order, so a customer's index gives its id from here on
+        int firstCustomerId = 0;
+        for (int i = 0; i < customerCount; i++) {
+            int id = store.newCustomerId();
+            if (i == 0) firstCustomerId = id;
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            journal.customerSaved(new Customer(id, name, phoneFor(id)));
+            if (journal.pendingRecords() == 10_000) journal.write(journal.takePending());
+        }
+        journal.write(journal.takePending());
+        
+        // Popular products and regular customers are spread over the id range rather than
+        // being the lowest ids
+        Zipf productPopularity = new Zipf(productCount, 1.0, random);
+        Zipf customerLoyalty = new Zipf(customerCount, 0.8, random);
+        ZoneId zone = ZoneId.systemDefault();
+        long now = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        long bills = 0, lines = 0;
+        File purchaseFile = new File(dir, "purchases.tmp");
+        DataOutputStream purchases = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(purchaseFile)));
+        for (LocalDate day = today.minusDays(days - 1); !day.isAfter(today); day = day.plusDays(1)) {
+            for (int h = 0; h < HOURLY_TRAFFIC.length; h++) {
+                int count = (int) Math.round(billsPerHour * HOURLY_TRAFFIC[h]);
+                long hourStart = day.atTime(OPENING_HOUR + h, 0).atZone(zone).toInstant().toEpochMilli();
+                long slot = TimeUnit.HOURS.toMillis(1) / Math.max(1, count);
+                for (int b = 0; b < count; b++) {
+                    long time = hourStart + b * slot + (long) (random.nextDouble() * slot);
+                    if (time > now) break;
+                    // Roughly geometric basket sizes, mean about 8 lines
+                    int itemCount = 1 + (int) (-Math.log(1 - random.nextDouble()) * 7);
+                    List<BillItem> items = new ArrayList<>(itemCount);
+                    long total = 0;
+                    for (int i = 0; i < itemCount; i++) {
+                        Product p = catalog[productPopularity.next()];
+                        long qty = "kg".equals(p.getUnitType())
+                                ? 50 * (5 + random.nextInt(56))
+                                : (random.nextInt(4) == 0 ? 2 + random.nextInt(4) : 1) * Quantity.ONE;
+                        long price = Money.fromTaka(p.getPrice());
+                        long subtotal = Money.times(price, qty);
+                        items.add(new BillItem(p.getId(), p.getName(), qty, p.getUnitType(), price, subtotal));
+                        total += subtotal;
+                    }
+                    // Customers pay to the next 10 taka
+                    long paid = (total + 999) / 1000 * 1000;
+                    String cashier = random.nextInt(10) == 0 ? "admin" : "cashier";
+                    int customer = customerLoyalty.next();
+                    Bill bill = new Bill(store.newBillId(), firstCustomerId + customer, items, total, new Date(time), cashier, paid, paid - total);
+                    store.billArchive().append(bill);
+                    purchases.writeInt(customer);
+                    purchases.writeLong(time);
+                    purchases.writeLong(total);
+                    bills++;
+                    lines += itemCount;
+                }
+            }
+        }
+        
+        purchases.close();
+        
+        int[] visits = new int[Math.min(SUMMARY_CHUNK, customerCount)];
+        long[] lastPurchase = new long[visits.length];
+        long[] spend = new long[visits.length];
+        for (int from = 0; from < customerCount; from += SUMMARY_CHUNK) {
+            int size = Math.min(SUMMARY_CHUNK, customerCount - from);
+            Arrays.fill(visits, 0);
+            Arrays.fill(lastPurchase, 0);
+            Arrays.fill(spend, 0);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(purchaseFile)))) {
+                for (long b = 0; b < bills; b++) {
+                    int i = in.readInt() - from;
+                    long time = in.readLong();
+                    long total = in.readLong();
+                    if (i < 0 || i >= size) continue;
+                    visits[i]++;
+                    lastPurchase[i] = Math.max(lastPurchase[i], time);
+                    spend[i] += total;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (visits[i] == 0) continue;
+                Customer c = new Customer(firstCustomerId + from + i, null, null);
+                c.setSummary(visits[i], lastPurchase[i], spend[i]);
+                journal.customerSummary(c);
+                if (journal.pendingRecords() == 10_000) journal.write(journal.takePending());
+            }
+        }
+        journal.write(journal.takePending());
+        purchaseFile.delete();
+        
+        store.initializeDefaultUsers();
+        store.compactJournal();
+        System.out.printf("%,d products, %,d customers, %,d bills (%,d lines) over %d days in %.1f s%n",
+                productCount, customerCount, bills, lines, days, (System.nanoTime() - start) / 1e9);
+    }
+    
+    // Unique, phone-like numbers that are not in id order: 01 followed by nine digits
+    // (3^18 is coprime with 10^9, so the mapping is one to one).
+    static String phoneFor(int customerId) {
+        return String.format("01%09d", customerId * 387_420_489L % 1_000_000_000L);
+    }
+    
+    // Draws indexes 0..n-1 with probability proportional to 1 / rank^exponent, where the
+    // ranks are a seeded shuffle of the indexes.
+    private static class Zipf {
+        private final double[] cumulative;
+        private final int[] byRank;
+        private final Random random;
+        
+        Zipf(int n, double exponent, Random random) {
+            this.random = random;
+            cumulative = new double[n];
+            double sum = 0;
+            for (int rank = 0; rank < n; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            byRank = new int[n];
+            for (int i = 0; i < n; i++) {
+                byRank[i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = byRank[i];
+                byRank[i] = byRank[j];
+                byRank[j] = t;
+            }
+        }
+        
+        int next() {
+            double u = random.nextDouble() * cumulative[cumulative.length - 1];
+            int rank = Arrays.binarySearch(cumulative, u);
+            if (rank < 0) rank = -rank - 1;
+            return byRank[Math.min(rank, byRank.length - 1)];
+        }
+    }
+}
+
+// ---------- Main GUI ----------
+public class SupermarketBillingApp extends JFrame {
+    private static final long HOLD_TTL_MS = TimeUnit.MINUTES.toMillis(15);
+    private SupermarketStore store = new SupermarketStore(HOLD_TTL_MS);
+    private CustomerService customers = new CustomerService(store);
+    private InventoryService inventory = new InventoryService(store);
+    private BillingService billing = new BillingService(store);
+    private JTextField phoneField;
+    private JTextField nameField;
+    private JTextField productSearchField;
+    private JList<Product> productList;
+    private ProductResultListModel productListModel;
+    private JTextField qtyField;
+    private JTable billTable;
+    private CartTableModel cart = new CartTableModel();
+    private CheckoutEngine.Lane lane = billing.openCart();
+    private JLabel totalLabel;
+    private static final int SEARCH_LIMIT = 100;
+    private static final long SEARCH_DEBOUNCE_MS = 120;
+    // One worker for the app's lifetime: the billing panel is rebuilt at every login and
+    // each new worker would leave another search thread behind
+    private final ProductSearchWorker productSearchWorker = new ProductSearchWorker(store.repository().search(), SEARCH_LIMIT, SEARCH_DEBOUNCE_MS);
+    private static final Metrics.Histogram DASHBOARD_REFRESH_TIME = Metrics.timer("ui.dashboard.refresh");
+    private static final Metrics.Histogram LOGIN_TIME = Metrics.timer("ui.login");
+    private static final Metrics.Counter LOGINS_FAILED = Metrics.counter("ui.login.failed");
+    private String currentUser;
+    private String currentUserRole;
+    
+    public SupermarketBillingApp() {
+        setTitle("Amader Supermarket - Billing System");
+        setSize(900, 700);
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+        store.initializeDefaultUsers();
+        // The one full read from disk; after this every screen works from memory
+        try {
+            store.load();
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, e.getCause().getMessage(), "Cannot open the store", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+        store.setWriteFailureListener(e -> {
+            e.printStackTrace();
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, "Could not save changes to disk: " + e.getMessage()));
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+        showLoginDialog();
+    }
+    
+    private void showLoginDialog() {
+        JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
+        JTextField usernameField = new JTextField();
+        JPasswordField passwordField = new JPasswordField();
+        panel.add(new JLabel("Username:"));
+        panel.add(usernameField);
+        panel.add(new JLabel("Password:"));
+        panel.add(passwordField);
+        
+        // Add Enter key support for login button
+        JButton loginBtn = new JButton("Login");
+        getRootPane().setDefaultButton(loginBtn);
+        
+        int result = JOptionPane.showConfirmDialog(this, panel, "Login", 
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result == JOptionPane.OK_OPTION) {
+            String username = usernameField.getText().trim();
+            String password = new String(passwordField.getPassword());
+            long start = System.nanoTime();
+            User user = store.authenticate(username, password);
+            LOGIN_TIME.record(System.nanoTime() - start);
+            if (user != null) {
+                currentUser = username;
+                currentUserRole = user.getRole();
+                JOptionPane.showMessageDialog(this, "Login successful! Welcome " + username);
+                initializeMainUI(user.getRole());
+                setVisible(true);
+            } else {
+                LOGINS_FAILED.increment();
+                JOptionPane.showMessageDialog(this, "Invalid username or password!");
+                showLoginDialog();
+            }
+        } else {
+            System.exit(0);
+        }
+    }
+    
+    private void initializeMainUI(String role) {
+        getContentPane().removeAll();
+        
+        JTabbedPane tabs = new JTabbedPane();
+        
+        if ("admin".equals(role)) {
+            tabs.add("Dashboard", createDashboardPanel());
+            tabs.add("Customers", createCustomerPanel());
+            tabs.add("Products", createProductPanel());
+            tabs.add("Billing", createBillingPanel());
+        } else {
+            tabs.add("Billing", createBillingPanel());
+            tabs.add("Products", createProductViewPanel());
+        }
+        add(tabs);
+        revalidate();
+        repaint();
+    }
+    
+    private JPanel createDashboardPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        // Header with refresh button
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        JLabel headerLabel = new JLabel("DASHBOARD OVERVIEW", SwingConstants.CENTER);
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 18));
+        
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refreshDashboard(panel));
+        JButton diagnosticsBtn = new JButton("Diagnostics");
+        diagnosticsBtn.addActionListener(e -> showDiagnostics());
+        JButton reloadBtn = new JButton("Reload from Disk");
+        reloadBtn.addActionListener(e -> reloadFromDisk());
+        JPanel headerButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        headerButtons.add(reloadBtn);
+        headerButtons.add(diagnosticsBtn);
+        headerButtons.add(refreshBtn);
+        
+        headerPanel.add(headerLabel, BorderLayout.CENTER);
+        headerPanel.add(headerButtons, BorderLayout.EAST);
+        panel.add(headerPanel, BorderLayout.NORTH);
+        
+        // Create the dashboard content
+        refreshDashboard(panel);
+        
+        return panel;
+    }
+    
+    // Recovery after the data files were changed or restored outside the app: everything is
+    // read again and the screens rebuilt. The bill being built is kept.
+    private void reloadFromDisk() {
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Reload all customers, products and bills from disk?", "Reload from Disk", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) return;
+        store.reload();
+        initializeMainUI(currentUserRole);
+    }
+    
+    // Slow operations and EDT stalls since startup, plus the current metrics, with an
+    // option to save them for a bug report.
+    private void showDiagnostics() {
+        String text = SlowOperationLog.dump() + "\n" + Metrics.report();
+        JTextArea area = new JTextArea(text);
+        area.setEditable(false);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        area.setCaretPosition(0);
+        JScrollPane scroll = new JScrollPane(area);
+        scroll.setPreferredSize(new Dimension(800, 450));
+        Object[] options = {"Save to File", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, scroll, "Diagnostics", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.PLAIN_MESSAGE, null, options, options[1]);
+        if (choice == 0) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("diagnostics-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".txt"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try (PrintWriter out = new PrintWriter(chooser.getSelectedFile(), StandardCharsets.UTF_8)) {
+                    out.print(text);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this, "Error saving diagnostics: " + ex.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void refreshDashboard(JPanel panel) {
+        long start = System.nanoTime();
+        // Remove existing components except header
+        Component[] components = panel.getComponents();
+        for (Component comp : components) {
+            if (comp instanceof JPanel) {
+                JPanel compPanel = (JPanel) comp;
+                if (compPanel.getComponentCount() > 0 && compPanel.getComponent(0) instanceof JLabel) {
+                    // This is the header panel, keep it
+                    continue;
+                }
+            }
+            panel.remove(comp);
+        }
+        
+        // Move bills older than 30 days out of memory
+        billing.retireOldBills();
+        
+        // Stats panel
+        JPanel statsPanel = new JPanel(new GridLayout(2, 3, 10, 10));
+        
+        // Calculate statistics
+        int totalProducts = inventory.productCount();
+        int lowStockProducts = inventory.count(InventoryStatusIndex.Status.LOW_STOCK);
+        int outOfStockProducts = inventory.count(InventoryStatusIndex.Status.OUT_OF_STOCK);
+        DailySalesSummary today = billing.todaySales();
+        long totalRevenue = today.getRevenue();
+        int totalBills = today.getBillCount();
+        int totalCustomers = customers.count();
+        
+        // Today's sales by product type
+        long todayKgSales = today.getKgSold();
+        long todayPcsSales = today.getPcsSold();
+        
+        // Create stat cards with clickable functionality
+        JButton totalProductsBtn = createClickableStatCard("Total Products", String.valueOf(totalProducts));
+        JButton lowStockBtn = createClickableStatCard("Low Stock", String.valueOf(lowStockProducts));
+        JButton outOfStockBtn = createClickableStatCard("Out of Stock", String.valueOf(outOfStockProducts));
+        JButton revenueBtn = createStatCard("Today's Revenue", Money.format(totalRevenue));
+        JButton totalBillsBtn = createStatCard("Today's Bills", String.valueOf(totalBills));
+        JButton salesBtn = createStatCard("Today's Sales", "Kg: " + Quantity.format(todayKgSales) + ", Pcs: " + Quantity.format(todayPcsSales));
+        
+        StringBuilder cashierTip = new StringBuilder("<html>");
+        for (Map.Entry<String, DailySalesSummary.CashierTotals> e : today.getCashierTotals().entrySet()) {
+            cashierTip.append(e.getKey()).append(": ").append(e.getValue().getBillCount())
+                    .append(" bills, ").append(Money.format(e.getValue().getRevenue())).append("<br>");
+        }
+        revenueBtn.setToolTipText(cashierTip.append("</html>").toString());
+        
+        // Add click listeners
+        totalProductsBtn.addActionListener(e -> showProductsDialog("All Products", new ArrayList<>(inventory.all())));
+        lowStockBtn.addActionListener(e -> showProductsDialog("Low Stock Products",
+                inventory.list(InventoryStatusIndex.Status.LOW_STOCK)));
+        outOfStockBtn.addActionListener(e -> showProductsDialog("Out of Stock Products",
+                inventory.list(InventoryStatusIndex.Status.OUT_OF_STOCK)));
+        
+        statsPanel.add(totalProductsBtn);
+        statsPanel.add(lowStockBtn);
+        statsPanel.add(outOfStockBtn);
+        statsPanel.add(revenueBtn);
+        statsPanel.add(totalBillsBtn);
+        statsPanel.add(salesBtn);
+        
+        panel.add(statsPanel, BorderLayout.CENTER);
+        
+        // Recent activity (today's bills only)
+        JPanel recentPanel = new JPanel(new BorderLayout());
+        recentPanel.setBorder(BorderFactory.createTitledBorder("Today's Bills"));
+        
+        String[] columns = {"Bill No", "Customer", "Amount", "Time", "Cashier"};
+        DefaultTableModel recentModel = new DefaultTableModel(columns, 0);
+        JTable recentTable = new JTable(recentModel);
+        
+        // Show today's bills
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+        for (Bill bill : today.getBills()) {
+            recentModel.addRow(new Object[]{
+                bill.getBillNo(),
+                bill.getCustomer().getName(),
+                Money.format(bill.getTotal()),
+                timeFormat.format(bill.getDate()),
+                bill.getCashier()
+            });
+        }
+        
+        recentPanel.add(new JScrollPane(recentTable), BorderLayout.CENTER);
+        panel.add(recentPanel, BorderLayout.SOUTH);
+        
+        panel.revalidate();
+        panel.repaint();
+        DASHBOARD_REFRESH_TIME.record(System.nanoTime() - start);
+    }
+    
+    private void showProductsDialog(String title, List<Product> productsToShow) {
+        JDialog dialog = new JDialog(this, title, true);
+        dialog.setSize(500, 400);
+        dialog.setLocationRelativeTo(this);
+        
+        JPanel panel = new JPanel(new BorderLayout());
+        
+        String[] columns = {"ID", "Name", "Price", "Stock", "Unit", "Status"};
+        DefaultTableModel model = new DefaultTableModel(columns, 0);
+        JTable table = new JTable(model);
+        
+        for (Product p : productsToShow) {
+            model.addRow(new Object[]{
+                p.getId(), p.getName(), "Tk " + p.getPrice(), Quantity.format(p.getStock()), p.getUnitType(), stockStatusText(p)
+            });
+        }
+        
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        
+        JButton closeBtn = new JButton("Close");
+        closeBtn.addActionListener(e -> dialog.dispose());
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(closeBtn);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        dialog.add(panel);
+        dialog.setVisible(true);
+    }
+    
+    private JButton createClickableStatCard(String title, String value) {
+        JButton card = new JButton();
+        card.setLayout(new BorderLayout());
+        card.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(Color.BLUE, 2),
+            BorderFactory.createEmptyBorder(10, 10, 10, 10)
+        ));
+        card.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        
+        JLabel titleLabel = new JLabel(title, SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        
+        JLabel valueLabel = new JLabel(value, SwingConstants.CENTER);
+        valueLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        valueLabel.setForeground(Color.BLUE);
+        
+        card.add(titleLabel, BorderLayout.NORTH);
+        card.add(valueLabel, BorderLayout.CENTER);
+        
+        return card;
+    }
+    
+    private JButton createStatCard(String title, String value) {
+        JButton card = new JButton();
+        card.setLayout(new BorderLayout());
+        card.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(Color.GRAY, 1),
+            BorderFactory.createEmptyBorder(10, 10, 10, 10)
+        ));
+        card.setEnabled(false); // Make non-clickable
+        
+        JLabel titleLabel = new JLabel(title, SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        
+        JLabel valueLabel = new JLabel(value, SwingConstants.CENTER);
+        valueLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        
+        card.add(titleLabel, BorderLayout.NORTH);
+        card.add(valueLabel, BorderLayout.CENTER);
+        
+        return card;
+    }
+    
+    private JPanel createCustomerPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        // Header with refresh button
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        JLabel headerLabel = new JLabel("CUSTOMER MANAGEMENT", SwingConstants.CENTER);
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refreshCustomerPanel(panel));
+        
+        headerPanel.add(headerLabel, BorderLayout.CENTER);
+        headerPanel.add(refreshBtn, BorderLayout.EAST);
+        panel.add(headerPanel, BorderLayout.NORTH);
+        
+        // Create customer panel content
+        refreshCustomerPanel(panel);
+        
+        return panel;
+    }
+    
+    private void refreshCustomerPanel(JPanel panel) {
+        // Remove existing components except header
+        Component[] components = panel.getComponents();
+        for (int i = 1; i < components.length; i++) {
+            panel.remove(components[i]);
+        }
+        
+        // Search panel
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JTextField searchField = new JTextField(15);
+        JButton searchBtn = new JButton("Search by Phone");
+        JButton viewHistoryBtn = new JButton("View Purchase History");
+        JButton clearBtn = new JButton("Clear Search");
+        JButton archiveOldBtn = new JButton("Archive Old Bills");
+        
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(searchField);
+        searchPanel.add(searchBtn);
+        searchPanel.add(viewHistoryBtn);
+        searchPanel.add(clearBtn);
+        searchPanel.add(archiveOldBtn);
+        
+        // Add customer form
+        JPanel formPanel = new JPanel(new GridLayout(2, 2, 5, 5));
+        JTextField nameField = new JTextField();
+        JTextField phoneField = new JTextField();
+        JButton addBtn = new JButton("Add New Customer");
+        
+        formPanel.add(new JLabel("Name:"));
+        formPanel.add(nameField);
+        formPanel.add(new JLabel("Phone:"));
+        formPanel.add(phoneField);
+        
+        // Add keyboard navigation to form fields
+        setupKeyboardNavigation(nameField, phoneField, addBtn);
+        setupKeyboardNavigation(phoneField, null, addBtn); // Changed to trigger addBtn on Enter
+        
+        JPanel formContainer = new JPanel(new BorderLayout());
+        formContainer.add(formPanel, BorderLayout.CENTER);
+        formContainer.add(addBtn, BorderLayout.SOUTH);
+        
+        // Customers table
+        CustomerTableModel customerModel = new CustomerTableModel();
+        JTable customerTable = new JTable(customerModel);
+        
+        // Populate table
+        refreshCustomerTable(customerModel);
+        
+        // Delete button
+        JButton deleteBtn = new JButton("Delete Selected Customer");
+        deleteBtn.addActionListener(e -> deleteCustomer(customerTable, customerModel));
+        
+        // Edit button
+        JButton editBtn = new JButton("Edit Selected Customer");
+        editBtn.addActionListener(e -> editCustomer(customerTable, customerModel));
+        
+        // Event handlers
+        searchBtn.addActionListener(e -> {
+            String searchText = searchField.getText().trim();
+            if (searchText.isEmpty()) {
+                refreshCustomerTable(customerModel);
+                return;
+            }
+            
+            customerModel.setCustomers(customers.search(searchText));
+        });
+        
+        clearBtn.addActionListener(e -> {
+            searchField.setText("");
+            refreshCustomerTable(customerModel);
+        });
+        
+        archiveOldBtn.addActionListener(e -> {
+            if (authenticateAdmin()) {
+                billing.retireOldBills();
+                refreshCustomerTable(customerModel);
+                JOptionPane.showMessageDialog(this, "Bills older than 30 days have been moved to the archive.");
+            }
+        });
+        
+        addBtn.addActionListener(e -> {
+            // Rejects an empty field or a phone that already exists
+            try {
+                customers.create(nameField.getText(), phoneField.getText());
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());
+                return;
+            }
+            refreshCustomerTable(customerModel);
+            nameField.setText("");
+            phoneField.setText("");
+            JOptionPane.showMessageDialog(this, "Customer added successfully!");
+        });
+        
+        viewHistoryBtn.addActionListener(e -> {
+            int selectedRow = customerTable.getSelectedRow();
+            if (selectedRow == -1) {
+                JOptionPane.showMessageDialog(this, "Please select a customer first!");
+            } else {
+                Customer selectedCustomer = customers.findById(customerModel.customerAt(selectedRow).getId());
+                
+                if (selectedCustomer != null) {
+                    showPurchaseHistory(selectedCustomer);
+                }
+            }
+        });
+        
+        // Layout
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(searchPanel, BorderLayout.NORTH);
+        northPanel.add(formContainer, BorderLayout.CENTER);
+        
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(editBtn);
+        buttonPanel.add(deleteBtn);
+        
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(new JScrollPane(customerTable), BorderLayout.CENTER);
+        southPanel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        panel.add(northPanel, BorderLayout.CENTER);
+        panel.add(southPanel, BorderLayout.SOUTH);
+        
+        panel.revalidate();
+        panel.repaint();
+    }
+    
+    private void editCustomer(JTable customerTable, CustomerTableModel customerModel) {
+        int selectedRow = customerTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a customer to edit!");
+            return;
+        }
+        
+        Customer selectedCustomer = customers.findById(customerModel.customerAt(selectedRow).getId());
+        
+        if (selectedCustomer != null) {
+            JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
+            JTextField nameField = new JTextField(selectedCustomer.getName());
+            JTextField phoneField = new JTextField(selectedCustomer.getPhone());
+            
+            panel.add(new JLabel("Name:"));
+            panel.add(nameField);
+            panel.add(new JLabel("Phone:"));
+            panel.add(phoneField);
+            
+            int result = JOptionPane.showConfirmDialog(this, panel, "Edit Customer", 
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            
+            if (result == JOptionPane.OK_OPTION) {
+                // Rejects an empty field or a phone that belongs to another customer
+                try {
+                    customers.update(selectedCustomer, nameField.getText(), phoneField.getText());
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage());
+                    return;
+                }
+                refreshCustomerTable(customerModel);
+                JOptionPane.showMessageDialog(this, "Customer updated successfully!");
+            }
+        }
+    }
+    
+    private void deleteCustomer(JTable customerTable, CustomerTableModel customerModel) {
+        int selectedRow = customerTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a customer to delete!");
+            return;
+        }
+        
+        // Admin authentication
+        if (!authenticateAdmin()) {
+            return;
+        }
+        
+        int customerId = customerModel.customerAt(selectedRow).getId();
+        String customerName = customerModel.customerAt(selectedRow).getName();
+        
+        int confirm = JOptionPane.showConfirmDialog(this, 
+                "Are you sure you want to delete customer: " + customerName + "?",
+                "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        
+        if (confirm == JOptionPane.YES_OPTION) {
+            customers.delete(customerId);
+            refreshCustomerTable(customerModel);
+            JOptionPane.showMessageDialog(this, "Customer deleted successfully!");
+        }
+    }
+    
+    private boolean authenticateAdmin() {
+        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        JTextField usernameField = new JTextField();
+        JPasswordField passwordField = new JPasswordField();
+        panel.add(new JLabel("Admin Username:"));
+        panel.add(usernameField);
+        panel.add(new JLabel("Admin Password:"));
+        panel.add(passwordField);
+        int result = JOptionPane.showConfirmDialog(this, panel, "Admin Authentication", 
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result == JOptionPane.OK_OPTION) {
+            String username = usernameField.getText().trim();
+            String password = new String(passwordField.getPassword());
+            
+            User user = store.authenticate(username, password);
+            if (user != null && "admin".equals(user.getRole())) {
+                return true;
+            }
+            
+            JOptionPane.showMessageDialog(this, "Invalid admin credentials!");
+        }
+        return false;
+    }
+    
+    private void setupKeyboardNavigation(JTextField currentField, JComponent nextField, JButton button) {
+        currentField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    if (nextField != null) {
+                        nextField.requestFocus();
+                        if (nextField instanceof JTextField) {
+                            ((JTextField) nextField).selectAll();
+                        }
+                    } else if (button != null) {
+                        button.doClick();
+                    }
+                    e.consume();
+                }
+            }
+        });
+    }
+    
+    private void refreshCustomerTable(CustomerTableModel model) {
+        model.setCustomers(customers.all());
+    }
+    
+    private void showPurchaseHistory(Customer customer) {
+        JDialog historyDialog = new JDialog(this, "Purchase History - " + customer.getName(), true);
+        historyDialog.setSize(600, 400);
+        historyDialog.setLocationRelativeTo(this);
+        
+        JPanel panel = new JPanel(new BorderLayout());
+        
+        // Newest first; bills from before the retention window are read as the table scrolls to them
+        PurchaseHistoryTableModel historyModel = new PurchaseHistoryTableModel(billing, customer);
+        JTable historyTable = new JTable(historyModel);
+        
+        JButton viewDetailsBtn = new JButton("View Bill Details");
+        JButton deleteBtn = new JButton("Delete Bill");
+        
+        viewDetailsBtn.addActionListener(e -> {
+            int selectedRow = historyTable.getSelectedRow();
+            if (selectedRow >= 0 && historyModel.billAt(selectedRow) != null) {
+                int billNo = historyModel.billAt(selectedRow).getBillNo();
+                Bill bill = billing.findBill(billNo);
+                if (bill != null) {
+                    bill.setCustomer(customer);
+                    JTextArea billArea = new JTextArea(bill.toPrintableString());
+                    billArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                    billArea.setEditable(false);
+                    JOptionPane.showMessageDialog(historyDialog, new JScrollPane(billArea), 
+                            "Bill Details - #" + billNo, JOptionPane.INFORMATION_MESSAGE);
+                }
+            }
+        });
+        
+        deleteBtn.addActionListener(e -> {
+            int selectedRow = historyTable.getSelectedRow();
+            if (selectedRow >= 0 && historyModel.billAt(selectedRow) != null) {
+                if (authenticateAdmin()) {
+                    int billNo = historyModel.billAt(selectedRow).getBillNo();
+                    
+                    int confirm = JOptionPane.showConfirmDialog(historyDialog, 
+                            "Are you sure you want to delete Bill #" + billNo + "?",
+                            "Confirm Delete", JOptionPane.YES_NO_OPTION);
+                    
+                    if (confirm == JOptionPane.YES_OPTION) {
+                        billing.deleteBill(billNo);
+                        historyModel.remove(selectedRow);
+                        JOptionPane.showMessageDialog(historyDialog, "Bill deleted successfully!");
+                    }
+                }
+            }
+        });
+        
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(viewDetailsBtn);
+        buttonPanel.add(deleteBtn);
+        
+        panel.add(new JScrollPane(historyTable), BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        historyDialog.add(panel);
+        historyDialog.setVisible(true);
+    }
+    
+    private JPanel createProductPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        // Header with refresh button
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        JLabel headerLabel = new JLabel("PRODUCT MANAGEMENT", SwingConstants.CENTER);
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refreshProductPanel(panel));
+        
+        headerPanel.add(headerLabel, BorderLayout.CENTER);
+        headerPanel.add(refreshBtn, BorderLayout.EAST);
+        panel.add(headerPanel, BorderLayout.NORTH);
+        
+        // Create product panel content
+        refreshProductPanel(panel);
+        
+        return panel;
+    }
+    
+    private void refreshProductPanel(JPanel panel) {
+        // Remove existing components except header
+        Component[] components = panel.getComponents();
+        for (int i = 1; i < components.length; i++) {
+            panel.remove(components[i]);
+        }
+        
+        // Add product form
+        JPanel formPanel = new JPanel(new GridLayout(4, 2, 5, 5));
+        JTextField nameField = new JTextField();
+        JTextField priceField = new JTextField();
+        JTextField stockField = new JTextField();
+        JComboBox<String> unitCombo = new JComboBox<>(new String[]{"kg", "pcs"});
+        JButton addBtn = new JButton("Add New Product");
+        
+        formPanel.add(new JLabel("Product Name:"));
+        formPanel.add(nameField);
+        formPanel.add(new JLabel("Price:"));
+        formPanel.add(priceField);
+        formPanel.add(new JLabel("Initial Stock:"));
+        formPanel.add(stockField);
+        formPanel.add(new JLabel("Unit Type:"));
+        formPanel.add(unitCombo);
+        
+        // Add keyboard navigation to form fields
+        setupKeyboardNavigation(nameField, priceField, null);
+        setupKeyboardNavigation(priceField, stockField, null);
+        setupKeyboardNavigation(stockField, null, addBtn); // Changed to trigger addBtn on Enter
+        
+        JPanel formContainer = new JPanel(new BorderLayout());
+        formContainer.add(formPanel, BorderLayout.CENTER);
+        formContainer.add(addBtn, BorderLayout.SOUTH);
+        
+        // Products table
+        String[] columns = {"ID", "Name", "Price", "Stock", "Unit", "Status"};
+        DefaultTableModel productModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable productTable = new JTable(productModel);
+        
+        // Populate table
+        refreshProductTable(productModel);
+        
+        // Delete button
+        JButton deleteBtn = new JButton("Delete Selected Product");
+        deleteBtn.addActionListener(e -> deleteProduct(productTable, productModel));
+        
+        // Edit button
+        JButton editBtn = new JButton("Edit Selected Product");
+        editBtn.addActionListener(e -> editProduct(productTable, productModel));
+        
+        // Restock button
+        JButton restockBtn = new JButton("Restock Selected Product");
+        restockBtn.addActionListener(e -> restockProduct(productTable, productModel));
+        
+        addBtn.addActionListener(e -> {
+            String name = nameField.getText().trim();
+            String priceStr = priceField.getText().trim();
+            String stockStr = stockField.getText().trim();
+            String unitType = (String) unitCombo.getSelectedItem();
+            
+            if (name.isEmpty() || priceStr.isEmpty() || stockStr.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Please fill all fields!");
+                return;
+            }
+            
+            try {
+                double price = Double.parseDouble(priceStr);
+                long stock = Quantity.parse(stockStr);
+                inventory.add(name, price, stock, unitType);
+                refreshProductTable(productModel);
+                
+                nameField.setText("");
+                priceField.setText("");
+                stockField.setText("");
+                JOptionPane.showMessageDialog(this, "Product added successfully!");
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Please enter valid numbers for price and stock!");
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());
+            }
+        });
+        
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(editBtn);
+        buttonPanel.add(restockBtn);
+        buttonPanel.add(deleteBtn);
+        
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.add(formContainer, BorderLayout.NORTH);
+        centerPanel.add(new JScrollPane(productTable), BorderLayout.CENTER);
+        centerPanel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        panel.add(centerPanel, BorderLayout.CENTER);
+        
+        panel.revalidate();
+        panel.repaint();
+    }
+    
+    private void editProduct(JTable productTable, DefaultTableModel productModel) {
+        int selectedRow = productTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a product to edit!");
+            return;
+        }
+        
+        int productId = (Integer) productModel.getValueAt(selectedRow, 0);
+        Product selectedProduct = inventory.findById(productId);
+        
+        if (selectedProduct != null) {
+            JPanel panel = new JPanel(new GridLayout(5, 2, 5, 5));
+            JTextField nameField = new JTextField(selectedProduct.getName());
+            JTextField priceField = new JTextField(String.valueOf(selectedProduct.getPrice()));
+            JTextField stockField = new JTextField(Quantity.format(selectedProduct.getStock()));
+            JTextField thresholdField = new JTextField(String.valueOf(selectedProduct.getLowStockThreshold()));
+            JComboBox<String> unitCombo = new JComboBox<>(new String[]{"kg", "pcs"});
+            unitCombo.setSelectedItem(selectedProduct.getUnitType());
+            
+            panel.add(new JLabel("Product Name:"));
+            panel.add(nameField);
+            panel.add(new JLabel("Price:"));
+            panel.add(priceField);
+            panel.add(new JLabel("Stock:"));
+            panel.add(stockField);
+            panel.add(new JLabel("Unit Type:"));
+            panel.add(unitCombo);
+            panel.add(new JLabel("Low Stock Alert At:"));
+            panel.add(thresholdField);
+            
+            int result = JOptionPane.showConfirmDialog(this, panel, "Edit Product", 
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            
+            if (result == JOptionPane.OK_OPTION) {
+                try {
+                    String newName = nameField.getText().trim();
+                    double newPrice = Double.parseDouble(priceField.getText().trim());
+                    long newStock = Quantity.parse(stockField.getText().trim());
+                    int newThreshold = Integer.parseInt(thresholdField.getText().trim());
+                    String newUnitType = (String) unitCombo.getSelectedItem();
+                    
+                    inventory.update(selectedProduct, newName, newPrice, newStock, newThreshold);
+                    // Note: Unit type change might require more complex handling
+                    
+                    refreshProductTable(productModel);
+                    JOptionPane.showMessageDialog(this, "Product updated successfully!");
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Please enter valid numbers for price and stock!");
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void restockProduct(JTable productTable, DefaultTableModel productModel) {
+        int selectedRow = productTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a product to restock!");
+            return;
+        }
+        
+        int productId = (Integer) productModel.getValueAt(selectedRow, 0);
+        Product selectedProduct = inventory.findById(productId);
+        
+        if (selectedProduct != null) {
+            String restockStr = JOptionPane.showInputDialog(this, 
+                    "Enter quantity to add to " + selectedProduct.getName() + ":",
+                    "0");
+            
+            if (restockStr != null && !restockStr.trim().isEmpty()) {
+                try {
+                    inventory.restock(selectedProduct, Quantity.parse(restockStr));
+                    refreshProductTable(productModel);
+                    JOptionPane.showMessageDialog(this, "Product restocked successfully!");
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Please enter a valid number!");
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void deleteProduct(JTable productTable, DefaultTableModel productModel) {
+        int selectedRow = productTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a product to delete!");
+            return;
+        }
+        
+        // Admin authentication
+        if (!authenticateAdmin()) {
+            return;
+        }
+        
+        int productId = (Integer) productModel.getValueAt(selectedRow, 0);
+        String productName = (String) productModel.getValueAt(selectedRow, 1);
+        
+        int confirm = JOptionPane.showConfirmDialog(this, 
+                "Are you sure you want to delete product: " + productName + "?",
+                "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        
+        if (confirm == JOptionPane.YES_OPTION) {
+            inventory.delete(productId);
+            refreshProductTable(productModel);
+            JOptionPane.showMessageDialog(this, "Product deleted successfully!");
+        }
+    }
+    
+    private String stockStatusText(Product p) {
+        switch (InventoryStatusIndex.statusOf(p)) {
+            case OUT_OF_STOCK:
+                return "OUT OF STOCK";
+            case LOW_STOCK:
+                return "LOW STOCK (" + Quantity.format(p.getStock()) + " left)";
+            default:
+                return "In Stock (" + Quantity.format(p.getStock()) + ")";
+        }
+    }
+    
+    private void refreshProductTable(DefaultTableModel model) {
+        model.setRowCount(0);
+        for (Product p : inventory.all()) {
+            model.addRow(new Object[]{
+                p.getId(), p.getName(), "Tk " + p.getPrice(), Quantity.format(p.getStock()), p.getUnitType(), stockStatusText(p)
+            });
+        }
+    }
+    
+    private JPanel createProductViewPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        // Header with refresh button
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        JLabel headerLabel = new JLabel("PRODUCT VIEW", SwingConstants.CENTER);
+        headerLabel.setFont(new Font("Arial", Font.BOLD, 16));
+        
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refreshProductViewPanel(panel));
+        
+        headerPanel.add(headerLabel, BorderLayout.CENTER);
+        headerPanel.add(refreshBtn, BorderLayout.EAST);
+        panel.add(headerPanel, BorderLayout.NORTH);
+        
+        // Create product view content
+        refreshProductViewPanel(panel);
+        
+        return panel;
+    }
+    
+    private void refreshProductViewPanel(JPanel panel) {
+        // Remove existing components except header
+        Component[] components = panel.getComponents();
+        for (int i = 1; i < components.length; i++) {
+            panel.remove(components[i]);
+        }
+        
+        // Products table
+        String[] columns = {"ID", "Name", "Price", "Stock", "Unit", "Status"};
+        DefaultTableModel productModel = new DefaultTableModel(columns, 0);
+        JTable productTable = new JTable(productModel);
+        
+        refreshProductTable(productModel);
+        
+        panel.add(new JScrollPane(productTable), BorderLayout.CENTER);
+        
+        panel.revalidate();
+        panel.repaint();
+    }
+    
+    private JPanel createBillingPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        // Customer section
+        JPanel customerPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        
+        phoneField = new JTextField(15);
+        nameField = new JTextField(15);
+        nameField.setEditable(false);
+        JButton findCustomerBtn = new JButton("Find/Add Customer");
+        
+        gbc.gridx = 0; gbc.gridy = 0;
+        customerPanel.add(new JLabel("Phone Number:"), gbc);
+        
+        gbc.gridx = 1; gbc.gridy = 0;
+        customerPanel.add(phoneField, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 1;
+        customerPanel.add(new JLabel("Customer Name:"), gbc);
+        
+        gbc.gridx = 1; gbc.gridy = 1;
+        customerPanel.add(nameField, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 2;
+        customerPanel.add(findCustomerBtn, gbc);
+        
+        // Product section
+        JPanel productPanel = new JPanel(new BorderLayout(5, 5));
+        productSearchField = new JTextField();
+        productListModel = new ProductResultListModel();
+        productSearchWorker.cancel();
+        store.checkout().setExpiryListener(expired -> {
+            if (expired == lane) SwingUtilities.invokeLater(this::cartExpired);
+        });
+        store.checkout().startSweeper();
+        productList = new JList<>(productListModel);
+        productList.setVisibleRowCount(6);
+        
+        productSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void changedUpdate(DocumentEvent e) { filterProducts(); }
+            public void removeUpdate(DocumentEvent e) { filterProducts(); }
+            public void insertUpdate(DocumentEvent e) { filterProducts(); }
+            
+            private void filterProducts() {
+                productSearchWorker.submit(productSearchField.getText(), results -> showProductResults(results));
+            }
+        });
+        
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 5));
+        searchPanel.add(new JLabel("Search Products:"), BorderLayout.NORTH);
+        searchPanel.add(productSearchField, BorderLayout.CENTER);
+        productPanel.add(searchPanel, BorderLayout.NORTH);
+        productPanel.add(new JScrollPane(productList), BorderLayout.CENTER);
+        
+        // Quantity section
+        JPanel quantityPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        qtyField = new JTextField(5);
+        JButton addBtn = new JButton("Add to Bill");
+        quantityPanel.add(new JLabel("Quantity:"));
+        quantityPanel.add(qtyField);
+        quantityPanel.add(addBtn);
+        
+        // Bill table
+        billTable = new JTable(cart);
+        totalLabel = new JLabel("Total: Tk 0.00", SwingConstants.RIGHT);
+        totalLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        JButton genBtn = new JButton("Generate Bill");
+        
+        // Layout
+        JPanel topPanel = new JPanel(new BorderLayout(5, 5));
+        topPanel.add(customerPanel, BorderLayout.NORTH);
+        topPanel.add(productPanel, BorderLayout.CENTER);
+        topPanel.add(quantityPanel, BorderLayout.SOUTH);
+        
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(totalLabel, BorderLayout.CENTER);
+        bottomPanel.add(genBtn, BorderLayout.EAST);
+        
+        // Event handlers
+        findCustomerBtn.addActionListener(e -> findOrAddCustomer());
+        addBtn.addActionListener(e -> addToBill());
+        genBtn.addActionListener(e -> generateBill());
+        
+        // Add keyboard navigation
+        setupKeyboardNavigation(phoneField, null, findCustomerBtn); // Changed to trigger findCustomerBtn on Enter
+        setupKeyboardNavigation(productSearchField, qtyField, null);
+        setupKeyboardNavigation(qtyField, null, addBtn); // Changed to trigger addBtn on Enter
+        
+        panel.add(topPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(billTable), BorderLayout.CENTER);
+        panel.add(bottomPanel, BorderLayout.SOUTH);
+        
+        // Load products for billing
+        refreshProductList();
+        
+        return panel;
+    }
+    
+    private void refreshProductList() {
+        productSearchWorker.cancel();
+        showProductResults(inventory.search("", SEARCH_LIMIT));
+    }
+    
+    private void showProductResults(List<Product> results) {
+        productList.clearSelection();
+        productListModel.setResults(results);
+    }
+    
+    private void findOrAddCustomer() {
+        String phone = phoneField.getText().trim();
+        if (phone.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please enter a phone number!");
+            return;
+        }
+        
+        Customer existing = customers.findByPhone(phone);
+        if (existing != null) {
+            nameField.setText(existing.getName());
+            JOptionPane.showMessageDialog(this, "Customer found: " + existing.getName());
+            return;
+        }
+        
+        String name = JOptionPane.showInputDialog(this, "Customer not found. Enter name for new customer:");
+        if (name != null && !name.trim().isEmpty()) {
+            Customer newCustomer = customers.create(name, phone);
+            nameField.setText(newCustomer.getName());
+            JOptionPane.showMessageDialog(this, "New customer created!");
+        }
+    }
+    
+    private void addToBill() {
+        if (phoneField.getText().trim().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please find or add a customer first!");
+            return;
+        }
+        
+        Product p = productList.getSelectedValue();
+        if (p == null) {
+            JOptionPane.showMessageDialog(this, "Please select a product!");
+            return;
+        }
+        try {
+            long qty = Quantity.parse(qtyField.getText());
+            // Reserves the stock for this cart; other lanes see it as unavailable
+            cart.add(billing.addToCart(lane, p, qty));
+            totalLabel.setText("Total: " + Money.format(cart.getTotal()));
+            qtyField.setText("");
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Please enter a valid quantity!");
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage());
+        }
+    }
+    
+    // The sweeper released this till's holds; show what the lane still has (nothing, unless
+    // a line was added since).
+    private void cartExpired() {
+        cart.setLines(lane.getLines());
+        totalLabel.setText("Total: " + Money.format(cart.getTotal()));
+        JOptionPane.showMessageDialog(this, "The bill was idle for too long and its items were released.");
+    }
+    
+    private void generateBill() {
+        if (phoneField.getText().trim().isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No customer selected!");
+            return;
+        }
+        
+        if (cart.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No items in the bill!");
+            return;
+        }
+        
+        // Find customer
+        Customer customer = customers.findByPhone(phoneField.getText());
+        
+        if (customer == null) {
+            JOptionPane.showMessageDialog(this, "Customer not found!");
+            return;
+        }
+        
+        // Ask for amount paid
+        String amountPaidStr = JOptionPane.showInputDialog(this, "Enter amount paid by customer:");
+        if (amountPaidStr == null || amountPaidStr.trim().isEmpty()) {
+            return;
+        }
+        
+        try {
+            long amountPaid = Money.parse(amountPaidStr);
+            CompletableFuture<Bill> saved;
+            try {
+                saved = billing.checkout(lane, cart.getLines(), customer, amountPaid, currentUser);
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());
+                return;
+            }
+            
+            // Show the bill once it is on disk; the till is free for the next customer meanwhile
+            saved.whenComplete((bill, error) -> SwingUtilities.invokeLater(() -> {
+                // The sale stands in memory and the store writer keeps retrying it
+                if (error != null) {
+                    JOptionPane.showMessageDialog(this, "The bill was recorded but could not be saved to disk yet:\n"
+                            + error.getCause().getMessage() + "\nIt will be saved as soon as the disk can be written. Do not close the app until then.",
+                            "Bill not saved yet", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                JTextArea billArea = new JTextArea(bill.toPrintableString());
+                billArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+                billArea.setEditable(false);
+                JOptionPane.showMessageDialog(this, new JScrollPane(billArea), "Bill Generated", JOptionPane.INFORMATION_MESSAGE);
+            }));
+            
+            // Reset form
+            cart.clear();
+            totalLabel.setText("Total: Tk 0.00");
+            phoneField.setText("");
+            nameField.setText("");
+            productSearchField.setText("");
+            refreshProductList();
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Please enter a valid amount!");
+        }
+    }
+    
+    public static void main(String[] args) {
+        Metrics.export();
+        EdtWatchdog.install();
+        SwingUtilities.invokeLater(() -> {
+            new SupermarketBillingApp();
+        });
+    }
+}
\ No newline at end of file
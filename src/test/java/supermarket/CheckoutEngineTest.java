@@ -0,0 +1,140 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Many cashiers against one CheckoutEngine over a small catalogue, so lanes keep
+// contending for the same products. Afterwards every product must satisfy initial
+// stock = final stock + quantity sold, with no negative stock and no reservation left.
+class CheckoutEngineTest {
+    private static final int PRODUCTS = 50;
+    private static final int CASHIERS = 16;
+    private static final int CARTS_PER_CASHIER = 200;
+    private static final long HOLD_TTL_MS = 1000;
+    
+    private final List<Product> catalog = new ArrayList<>(PRODUCTS);
+    private final long[] initial = new long[PRODUCTS + 1];
+    private final AtomicLongArray sold = new AtomicLongArray(PRODUCTS + 1);
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    
+    private StoreRepository repository() {
+        Random seed = new Random(7);
+        for (int id = 1; id <= PRODUCTS; id++) {
+            String unitType = id % 3 == 0 ? "kg" : "pcs";
+            long stock = (100 + seed.nextInt(900)) * Quantity.ONE;
+            if ("kg".equals(unitType)) stock += seed.nextInt(1000);
+            catalog.add(new Product(id, "Product " + id, 10 + id % 90, stock, unitType));
+            initial[id] = stock;
+        }
+        StoreRepository repository = new StoreRepository();
+        repository.load(Collections.emptyList(), catalog, Collections.emptyList());
+        return repository;
+    }
+    
+    @Test
+    void stockIsConservedUnderConcurrentCheckout() throws Exception {
+        CheckoutEngine engine = new CheckoutEngine(repository());
+        runCashiers(engine, () -> {});
+        assertTrue(committed.get() > 0);
+        assertStockConserved(engine);
+    }
+    
+    // The cashiers drive the sweeper themselves, each sweep a TTL further on than the
+    // last, so holds expire while other lanes are adding lines and committing however the
+    // threads are scheduled. A commit that loses the race must change nothing.
+    @Test
+    void stockIsConservedWhenHoldsExpireDuringCheckout() throws Exception {
+        CheckoutEngine engine = new CheckoutEngine(repository(), HOLD_TTL_MS);
+        engine.setExpiryListener(lane -> expired.incrementAndGet());
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis() + HOLD_TTL_MS);
+        runCashiers(engine, () -> engine.expireHolds(clock.addAndGet(HOLD_TTL_MS)));
+        assertTrue(committed.get() > 0);
+        assertTrue(expired.get() > 0);
+        assertStockConserved(engine);
+    }
+    
+    @Test
+    void expiredLaneCannotCommit() {
+        CheckoutEngine engine = new CheckoutEngine(repository(), HOLD_TTL_MS);
+        Product product = catalog.get(0);
+        CheckoutEngine.Lane lane = engine.openLane();
+        lane.add(product, Quantity.ONE);
+        List<BillItem> lines = lane.getLines();
+        assertEquals(Quantity.ONE, engine.reserved(product.getId()));
+        
+        assertEquals(1, engine.expireHolds(System.currentTimeMillis() + 3 * HOLD_TTL_MS));
+        assertEquals(0, engine.reserved(product.getId()));
+        assertThrows(IllegalStateException.class, () -> lane.commit(lines));
+        assertEquals(initial[product.getId()], product.getStock());
+    }
+    
+    // sweep is run at random points of each cart.
+    private void runCashiers(CheckoutEngine engine, Runnable sweep) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CASHIERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(CASHIERS);
+            for (int c = 0; c < CASHIERS; c++) {
+                long cashierSeed = c;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(cashierSeed);
+                    CheckoutEngine.Lane lane = engine.openLane();
+                    for (int k = 0; k < CARTS_PER_CASHIER; k++) {
+                        int lineCount = 1 + random.nextInt(5);
+                        for (int l = 0; l < lineCount; l++) {
+                            Product p = catalog.get(random.nextInt(PRODUCTS));
+                            long qty = "kg".equals(p.getUnitType()) ? 250 + random.nextInt(1500) : (1 + random.nextInt(3)) * Quantity.ONE;
+                            if (random.nextInt(8) == 0) sweep.run();
+                            try {
+                                lane.add(p, qty);
+                            } catch (IllegalStateException e) {
+                                // Not enough stock left unreserved
+                            }
+                        }
+                        if (random.nextInt(10) == 0) {
+                            lane.cancel();
+                            continue;
+                        }
+                        List<BillItem> lines = lane.getLines();
+                        if (random.nextInt(8) == 0) sweep.run();
+                        try {
+                            lane.commit(lines);
+                        } catch (IllegalStateException e) {
+                            // Expired in the meantime; whatever was added since is dropped
+                            lane.cancel();
+                            continue;
+                        }
+                        for (BillItem item : lines) {
+                            sold.addAndGet(item.getProductId(), item.getQuantity());
+                        }
+                        committed.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    private void assertStockConserved(CheckoutEngine engine) {
+        for (Product p : catalog) {
+            assertEquals(initial[p.getId()] - sold.get(p.getId()), p.getStock(), p.getName());
+            assertTrue(p.getStock() >= 0, p.getName());
+            assertEquals(0, engine.reserved(p.getId()), p.getName());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The store in src/test/resources/baseline-store was saved by the original single-file
+// app: customers.ser, products.ser, bills.ser and users.ser with its classes in the
+// default package. It must come through the first start whole.
+class LegacyStoreTest {
+    private static final String[] FILES = {"customers.ser", "products.ser", "bills.ser", "users.ser"};
+    
+    @TempDir
+    Path dir;
+    
+    private void copyFixture() throws IOException {
+        for (String name : FILES) {
+            try (InputStream in = LegacyStoreTest.class.getResourceAsStream("/baseline-store/" + name)) {
+                Files.copy(in, dir.resolve(name));
+            }
+        }
+    }
+    
+    private SupermarketStore open() {
+        SupermarketStore store = new SupermarketStore(dir.toFile(), 0);
+        store.load();
+        return store;
+    }
+    
+    @Test
+    void baselineStoreLoads() throws IOException {
+        copyFixture();
+        SupermarketStore store = open();
+        try {
+            assertStore(store);
+            for (String name : FILES) {
+                assertFalse(Files.exists(dir.resolve(name)), name);
+                assertTrue(Files.exists(dir.resolve(name + ".migrated")), name);
+            }
+        } finally {
+            store.close();
+        }
+        
+        // Second start reads the converted store
+        store = open();
+        try {
+            assertStore(store);
+        } finally {
+            store.close();
+        }
+    }
+    
+    private static void assertStore(SupermarketStore store) {
+        StoreRepository repository = store.repository();
+        assertEquals(2, repository.customerCount());
+        assertEquals(3, repository.productCount());
+        assertEquals(3, repository.bills().size());
+        assertEquals(3, store.users().size());
+        assertNotNull(store.authenticate("rana", "rana123"));
+        
+        Customer karim = repository.customerByPhone("01711000001");
+        assertEquals("Abdul Karim", karim.getName());
+        assertEquals(2, karim.getPurchaseHistory().size());
+        assertEquals(2, karim.getVisits());
+        assertEquals(31625 + 174500, karim.getLifetimeSpend());
+        assertEquals(store.billArchive().find(3).getDate().getTime(), karim.getLastPurchase());
+        assertEquals(1, repository.customerByPhone("01811000002").getVisits());
+        
+        assertEquals(37 * Quantity.ONE, repository.productById(1).getStock());
+        assertEquals(116 * Quantity.ONE, repository.productById(2).getStock());
+        
+        Bill first = store.billArchive().find(1);
+        assertEquals(1, first.getCustomerId());
+        assertEquals(31625, first.getTotal());
+        assertEquals(50000, first.getAmountPaid());
+        assertEquals(18375, first.getChange());
+        assertEquals("cashier", first.getCashier());
+        List<BillItem> items = first.getItems();
+        assertEquals(2, items.size());
+        assertEquals("Miniket Rice", items.get(0).getProductName());
+        assertEquals(2500, items.get(0).getQuantity());
+        assertEquals("kg", items.get(0).getUnitType());
+        assertEquals(7250, items.get(0).getUnitPrice());
+        assertEquals(18125, items.get(0).getSubtotal());
+        assertEquals("Teer Soybean...", store.billArchive().find(2).getItems().get(0).getProductName());
+    }
+    
+    @Test
+    void unreadableCustomersFileStopsTheLoad() throws IOException {
+        copyFixture();
+        truncate("customers.ser");
+        assertUnchangedAfterFailedLoad();
+    }
+    
+    @Test
+    void unreadableBillsFileStopsTheLoad() throws IOException {
+        copyFixture();
+        truncate("bills.ser");
+        assertUnchangedAfterFailedLoad();
+    }
+    
+    private void truncate(String name) throws IOException {
+        Path file = dir.resolve(name);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+    }
+    
+    private void assertUnchangedAfterFailedLoad() throws IOException {
+        SupermarketStore store = new SupermarketStore(dir.toFile(), 0);
+        try {
+            assertThrows(UncheckedIOException.class, store::load);
+        } finally {
+            store.close();
+        }
+        for (String name : FILES) {
+            assertTrue(Files.exists(dir.resolve(name)), name);
+            assertFalse(Files.exists(dir.resolve(name + ".migrated")), name);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(f -> f.getFileName().toString().startsWith("store.snapshot")));
+        }
+    }
+    
+    @Test
+    void receiptLineThatDoesNotParseIsKeptAsText() {
+        BillItem item = BillItem.fromReceiptLine("2 x something");
+        assertEquals("2 x something", item.getProductName());
+        assertEquals(0, item.getSubtotal());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenceWriterTest {
+    @TempDir
+    File dir;
+    
+    // A snapshot that cannot be written must not take the commits queued behind it down
+    // with it: they are still written to the journal and replay after a restart.
+    @Test
+    void failedSnapshotOnlyFailsItself() {
+        String journalFile = new File(dir, "store.journal").getPath();
+        TransactionJournal journal = new TransactionJournal(journalFile, 1 << 20);
+        PersistenceWriter writer = new PersistenceWriter(journal, new BillArchive(new File(dir, "bills").getPath()),
+                PersistenceWriter.Policy.COMMIT, 0);
+        
+        journal.customerSaved(new Customer(1, "Before", "01700000001"));
+        CompletableFuture<Void> before = writer.commit(journal.takePending(), 1, Collections.emptyList());
+        CompletableFuture<Void> snapshot = writer.snapshot(() -> {
+            throw new IOException("disk full");
+        });
+        journal.customerSaved(new Customer(2, "After", "01700000002"));
+        CompletableFuture<Void> after = writer.commit(journal.takePending(), 1, Collections.emptyList());
+        writer.close();
+        
+        before.join();
+        after.join();
+        assertThrows(CompletionException.class, snapshot::join);
+        
+        List<Customer> customers = new ArrayList<>();
+        new TransactionJournal(journalFile, 1 << 20).replay(customers, new ArrayList<>(), 0);
+        assertEquals(2, customers.size());
+        assertEquals("After", customers.get(1).getName());
+    }
+    
+    // A journal write that fails leaves its records buffered: the next commit writes them
+    // ahead of its own, so nothing already applied in memory is lost at a restart.
+    @Test
+    void failedJournalWriteIsRetried() {
+        String journalFile = new File(dir, "store.journal").getPath();
+        AtomicBoolean fail = new AtomicBoolean(true);
+        TransactionJournal journal = new TransactionJournal(journalFile, 1 << 20) {
+            @Override
+            public void write(byte[] bytes) throws IOException {
+                if (fail.getAndSet(false)) throw new IOException("disk full");
+                super.write(bytes);
+            }
+        };
+        PersistenceWriter writer = new PersistenceWriter(journal, new BillArchive(new File(dir, "bills").getPath()),
+                PersistenceWriter.Policy.COMMIT, 0);
+        List<Throwable> failures = new ArrayList<>();
+        writer.setFailureListener(failures::add);
+        
+        journal.customerSaved(new Customer(1, "Failed", "01700000001"));
+        CompletableFuture<Void> failed = writer.commit(journal.takePending(), 1, Collections.emptyList());
+        assertThrows(CompletionException.class, failed::join);
+        journal.customerSaved(new Customer(2, "Next", "01700000002"));
+        writer.commit(journal.takePending(), 1, Collections.emptyList()).join();
+        writer.close();
+        assertEquals(1, failures.size());
+        
+        List<Customer> customers = new ArrayList<>();
+        new TransactionJournal(journalFile, 1 << 20).replay(customers, new ArrayList<>(), 0);
+        assertEquals(2, customers.size());
+        assertEquals("Failed", customers.get(0).getName());
+        assertEquals("Next", customers.get(1).getName());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+    private static final int LIMIT = 100;
+    
+    private static List<String> names(List<Product> products) {
+        List<String> names = new ArrayList<>();
+        for (Product p : products) {
+            names.add(p.getName());
+        }
+        return names;
+    }
+    
+    // One and two character queries come from the index, names starting with the query first.
+    @Test
+    void shortQueriesFindPrefixesThenSubstrings() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.rebuild(Arrays.asList(
+                new Product(1, "Teer Soybean Oil", 180, 0, "pcs"),
+                new Product(2, "Miniket Rice", 72, 0, "kg"),
+                new Product(3, "Rice Flour", 60, 0, "kg"),
+                new Product(4, "Salt", 40, 0, "kg")));
+        
+        assertEquals(Arrays.asList("Rice Flour", "Miniket Rice"), names(index.search("ri", LIMIT)));
+        assertEquals(Arrays.asList("Salt", "Teer Soybean Oil"), names(index.search("s", LIMIT)));
+        assertEquals(Arrays.asList("Teer Soybean Oil", "Rice Flour"), names(index.search("l", 2)));
+        assertTrue(index.search("zq", LIMIT).isEmpty());
+        
+        Product salt = index.findById(4);
+        salt.setName("Sugar");
+        index.update(salt);
+        assertEquals(Arrays.asList("Teer Soybean Oil", "Rice Flour"), names(index.search("l", LIMIT)));
+        index.remove(index.findById(3));
+        assertEquals(Arrays.asList("Miniket Rice"), names(index.search("ri", LIMIT)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseHistoryTableModelTest {
+    @TempDir
+    File dir;
+    
+    // An archive that cannot be read ends the paging with an error row instead of
+    // leaving the table on "Loading..." for good.
+    @Test
+    void unreadableArchiveShowsAnErrorRow() throws Exception {
+        SupermarketStore store = new SupermarketStore(dir, 0);
+        try {
+            BillingService billing = new BillingService(store) {
+                @Override
+                public List<LocalDate> olderPurchaseDays() {
+                    throw new UncheckedIOException(new IOException("cold segment unreadable"));
+                }
+            };
+            Customer customer = new Customer(1, "Karim", "01711000001");
+            customer.setSummary(5, 0, 0);
+            PurchaseHistoryTableModel[] model = new PurchaseHistoryTableModel[1];
+            SwingUtilities.invokeAndWait(() -> {
+                model[0] = new PurchaseHistoryTableModel(billing, customer);
+                assertEquals(5, model[0].getRowCount());
+                assertEquals("Loading...", model[0].getValueAt(0, 1));
+            });
+            
+            String[] text = new String[1];
+            long deadline = System.currentTimeMillis() + 5000;
+            do {
+                Thread.sleep(10);
+                SwingUtilities.invokeAndWait(() -> text[0] = (String) model[0].getValueAt(0, 1));
+            } while (text[0].equals("Loading...") && System.currentTimeMillis() < deadline);
+            
+            assertTrue(text[0].startsWith("Could not read older bills"), text[0]);
+            SwingUtilities.invokeAndWait(() -> {
+                assertEquals(1, model[0].getRowCount());
+                assertNull(model[0].billAt(0));
+            });
+        } finally {
+            store.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+package supermarket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionJournalTest {
+    @TempDir
+    File dir;
+    
+    // Compaction waits for the journal to grow as large as the last snapshot, so a
+    // bigger store is compacted less often rather than after a fixed record count.
+    @Test
+    void compactionFollowsSnapshotSize() {
+        TransactionJournal journal = new TransactionJournal(new File(dir, "store.journal").getPath(), 1000);
+        int id = 0;
+        while (!journal.needsCompaction()) {
+            journal.customerSaved(new Customer(++id, "Customer " + id, "017" + id));
+        }
+        assertTrue(journal.byteCount() >= 1000);
+        assertEquals(journal.takePending().length, journal.byteCount());
+        
+        journal.compactionScheduled();
+        journal.setSnapshotBytes(10_000);
+        long written = 0;
+        while (!journal.needsCompaction()) {
+            journal.customerSaved(new Customer(++id, "Customer " + id, "017" + id));
+            written++;
+        }
+        assertTrue(journal.byteCount() >= 10_000);
+        assertTrue(written > 5 * (id - written));
+    }
+    
+    private String journalFile() {
+        return new File(dir, "store.journal").getPath();
+    }
+    
+    // Writes customers 1..count to the current generation and returns the bytes written.
+    private static byte[] writeCustomers(TransactionJournal journal, int from, int count) throws IOException {
+        for (int id = from; id < from + count; id++) {
+            journal.customerSaved(new Customer(id, "Customer " + id, "017" + id));
+        }
+        byte[] bytes = journal.takePending();
+        journal.write(bytes);
+        journal.force();
+        return bytes;
+    }
+    
+    private List<Customer> replay() {
+        List<Customer> customers = new ArrayList<>();
+        new TransactionJournal(journalFile(), 1000).replay(customers, new ArrayList<>(), 0);
+        return customers;
+    }
+    
+    @Test
+    void unfinishedLastRecordIsCutOff() throws IOException {
+        TransactionJournal journal = new TransactionJournal(journalFile(), 1000);
+        byte[] good = writeCustomers(journal, 1, 2);
+        journal.customerSaved(new Customer(3, "Torn", "0173"));
+        byte[] torn = journal.takePending();
+        journal.write(Arrays.copyOf(torn, torn.length - 3));
+        journal.force();
+        
+        assertEquals(2, replay().size());
+        assertEquals(good.length, new File(journalFile() + ".0").length());
+    }
+    
+    @Test
+    void zeroFilledTailIsCutOff() throws IOException {
+        TransactionJournal journal = new TransactionJournal(journalFile(), 1000);
+        byte[] good = writeCustomers(journal, 1, 2);
+        journal.write(new byte[64]);
+        journal.force();
+        
+        assertEquals(2, replay().size());
+        assertEquals(good.length, new File(journalFile() + ".0").length());
+    }
+    
+    // A record that fails its checksum with committed records after it stops the load
+    // instead of cutting those records off.
+    @Test
+    void damagedRecordBeforeTheEndStopsReplay() throws IOException {
+        TransactionJournal journal = new TransactionJournal(journalFile(), 1000);
+        byte[] bytes = writeCustomers(journal, 1, 3);
+        File file = new File(journalFile() + ".0");
+        byte[] damaged = Files.readAllBytes(file.toPath());
+        damaged[bytes.length / 3 + 12] ^= 1;
+        Files.write(file.toPath(), damaged);
+        
+        assertThrows(UncheckedIOException.class, this::replay);
+        assertArrayEquals(damaged, Files.readAllBytes(file.toPath()));
+    }
+    
+    // Only the newest generation can end in an interrupted write.
+    @Test
+    void damagedOlderGenerationStopsReplay() throws IOException {
+        TransactionJournal journal = new TransactionJournal(journalFile(), 1000);
+        writeCustomers(journal, 1, 2);
+        journal.rotate();
+        writeCustomers(journal, 3, 2);
+        File older = new File(journalFile() + ".0");
+        byte[] bytes = Files.readAllBytes(older.toPath());
+        Files.write(older.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+        
+        assertThrows(UncheckedIOException.class, this::replay);
+        assertEquals(bytes.length - 3, older.length());
+    }
+    
+    // Journals written before records had checksums still replay, followed by new records.
+    @Test
+    void recordsWithoutChecksumStillReplay() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeInt(1);
+        out.writeUTF("Old");
+        out.writeUTF("01700000001");
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(file);
+        record.writeInt(payload.size());
+        record.writeByte(TransactionJournal.CUSTOMER_SAVED);
+        payload.writeTo(record);
+        Files.write(new File(journalFile() + ".0").toPath(), file.toByteArray());
+        
+        writeCustomers(new TransactionJournal(journalFile(), 1000), 2, 1);
+        List<Customer> customers = replay();
+        assertEquals(2, customers.size());
+        assertEquals("Old", customers.get(0).getName());
+    }
+}
\ No newline at end of file